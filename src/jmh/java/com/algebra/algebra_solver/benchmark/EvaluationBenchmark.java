@@ -0,0 +1,78 @@
+package com.algebra.algebra_solver.benchmark;
+
+import com.algebra.algebra_solver.model.CompiledExpression;
+import com.algebra.algebra_solver.model.Node;
+import com.algebra.algebra_solver.service.EquationServiceImpl;
+import com.algebra.algebra_solver.util.BytecodeCompiler;
+import com.algebra.algebra_solver.util.EquationParser;
+import com.algebra.algebra_solver.util.ExpressionCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    int size;
+
+    @Param({ "1", "4" })
+    int variables;
+
+    @Param({ "0", "4" })
+    int depth;
+
+    private Node root;
+    private Map<String, Double> values;
+    private EquationServiceImpl service;
+    private long id;
+    private CompiledExpression program;
+    private CompiledExpression.Kernel kernel; // null when the program is over BytecodeCompiler.MAX_INSTRUCTIONS
+    private double[] slots, stack;
+
+    @Setup
+    public void setup() {
+        String expression = ExpressionGenerator.generate(size, variables, depth, 2);
+        root = EquationParser.parseToTree(expression);
+        values = ExpressionGenerator.values(variables);
+        service = new EquationServiceImpl();
+        id = service.store(expression).getId();
+        program = ExpressionCompiler.compile(root);
+        kernel = BytecodeCompiler.compile(program);
+        slots = new double[program.getSlots().length];
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = values.get(program.getSlots()[i]);
+        stack = new double[program.getMaxStack()];
+    }
+
+    @Benchmark
+    public double treeEvaluate() {
+        return root.evaluate(values);
+    }
+
+    @Benchmark
+    public double serviceEvaluate() {
+        return service.evaluate(id, values);
+    }
+
+    @Benchmark
+    public double interpreted() {
+        return program.run(slots, stack);
+    }
+
+    @Benchmark
+    public double jit() {
+        return kernel != null ? kernel.eval(slots) : program.run(slots, stack);
+    }
+
+    @Benchmark
+    public String toInfix() {
+        return root.toInfix();
+    }
+}
@@ -0,0 +1,54 @@
+package com.algebra.algebra_solver.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Deterministic expression generator shared by the benchmarks.
+ * <p>
+ * {@code size} is the number of additive terms, {@code variables} how many
+ * distinct names are cycled through, {@code depth} how many parenthesised
+ * {@code (t + k)} layers wrap each term and {@code degree} the exponent put on
+ * each variable. The first variable is always {@code x}.
+ */
+final class ExpressionGenerator {
+
+    private ExpressionGenerator() {
+    }
+
+    static String[] variableNames(int count) {
+        String[] names = new String[count];
+        names[0] = "x";
+        for (int i = 1; i < count; i++)
+            names[i] = "v" + i;
+        return names;
+    }
+
+    static String generate(int size, int variables, int depth, int degree) {
+        String[] names = variableNames(variables);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                sb.append(" + ");
+            String term = (i % 9 + 1) + "*" + names[i % variables] + (degree > 1 ? "^" + degree : "");
+            for (int d = 0; d < depth; d++)
+                term = "(" + term + " + " + (d + 1) + ")";
+            sb.append(term);
+        }
+        return sb.toString();
+    }
+
+    static Map<String, Double> values(int variables) {
+        Map<String, Double> vars = new LinkedHashMap<>();
+        for (String name : variableNames(variables))
+            vars.put(name, 1.5);
+        return vars;
+    }
+
+    /** Values for every variable except {@code x}, used as solve knowns. */
+    static Map<String, Double> knowns(int variables) {
+        Map<String, Double> vars = values(variables);
+        vars.remove("x");
+        return vars;
+    }
+}
@@ -0,0 +1,37 @@
+package com.algebra.algebra_solver.benchmark;
+
+import com.algebra.algebra_solver.model.Node;
+import com.algebra.algebra_solver.util.EquationParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    int size;
+
+    @Param({ "1", "4" })
+    int variables;
+
+    @Param({ "0", "4" })
+    int depth;
+
+    private String expression;
+
+    @Setup
+    public void setup() {
+        expression = ExpressionGenerator.generate(size, variables, depth, 2);
+    }
+
+    @Benchmark
+    public Node parseToTree() {
+        return EquationParser.parseToTree(expression);
+    }
+}
@@ -0,0 +1,89 @@
+package com.algebra.algebra_solver.benchmark;
+
+import com.algebra.algebra_solver.model.Node;
+import com.algebra.algebra_solver.service.EquationService;
+import com.algebra.algebra_solver.service.EquationServiceImpl;
+import com.algebra.algebra_solver.service.NumericSolver;
+import com.algebra.algebra_solver.service.SolveCache;
+import com.algebra.algebra_solver.util.EquationParser;
+import com.algebra.algebra_solver.util.ExpressionCompiler;
+import com.algebra.algebra_solver.util.MultiPolynomial;
+import com.algebra.algebra_solver.util.PolynomialUtils;
+import org.openjdk.jmh.annotations.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PolynomialBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    int size;
+
+    @Param({ "1", "4" })
+    int variables;
+
+    @Param({ "0", "4" })
+    int depth;
+
+    // 1 and 2 take the closed forms, higher degrees the Aberth iteration
+    @Param({ "1", "2", "5", "16" })
+    int degree;
+
+    private Node root;
+    private MultiPolynomial expanded;
+    private Map<String, Double> knowns;
+    private EquationServiceImpl service;
+    private EquationServiceImpl cachedService;
+    private long id;
+    private long cachedId;
+
+    @Setup
+    public void setup() {
+        // positive terms minus more than they add up to at x = 0 keep every generated equation solvable
+        String terms = ExpressionGenerator.generate(size, variables, depth, degree);
+        Map<String, Double> atZero = ExpressionGenerator.values(variables);
+        atZero.put("x", 0.0);
+        long offset = (long) Math.ceil(EquationParser.parseToTree(terms).evaluate(atZero)) + 1_000_000;
+        String expression = "(" + terms + ") - " + offset;
+        root = EquationParser.parseToTree(expression);
+        expanded = MultiPolynomial.expand(root, ExpressionCompiler.compile(root).getSlots());
+        knowns = ExpressionGenerator.knowns(variables);
+        // a size-0 cache, so solve() does the work instead of replaying the first result
+        service = new EquationServiceImpl(null, new SolveCache(0, Duration.ZERO), new NumericSolver(),
+                new SimpleMeterRegistry(), EquationServiceImpl.DEFAULT_JIT_THRESHOLD);
+        id = service.store(expression).getId();
+        cachedService = new EquationServiceImpl();
+        cachedId = cachedService.store(expression).getId();
+    }
+
+    @Benchmark
+    public Object toPolynomial() {
+        return PolynomialUtils.toPolynomial(root, "x", knowns);
+    }
+
+    // the per-solve work once the expansion is cached on the equation
+    @Benchmark
+    public Object substitute() {
+        return expanded.substitute("x", knowns);
+    }
+
+    @Benchmark
+    public EquationService.SolveResult solve() {
+        return service.solve(id, "x", knowns);
+    }
+
+    // every call after the first is a SolveCache hit
+    @Benchmark
+    public EquationService.SolveResult cachedSolve() {
+        return cachedService.solve(cachedId, "x", knowns);
+    }
+}
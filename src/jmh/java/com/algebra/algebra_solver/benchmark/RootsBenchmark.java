@@ -0,0 +1,35 @@
+package com.algebra.algebra_solver.benchmark;
+
+import com.algebra.algebra_solver.util.PolynomialRoots;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RootsBenchmark {
+
+    @Param({ "3", "8", "16", "32", "64" })
+    int degree;
+
+    private double[] coeffs;
+
+    @Setup
+    public void setup() {
+        // Gaussian coefficients: a mix of real and complex roots near the unit circle
+        Random rnd = new Random(7);
+        coeffs = new double[degree + 1];
+        for (int k = 0; k <= degree; k++)
+            coeffs[k] = rnd.nextGaussian();
+    }
+
+    @Benchmark
+    public PolynomialRoots.Roots find() {
+        return PolynomialRoots.find(coeffs);
+    }
+}
@@ -1,21 +1,63 @@
 package com.algebra.algebra_solver.controller;
 
+import com.algebra.algebra_solver.exception.EquationNotFoundException;
 import com.algebra.algebra_solver.model.Equation;
 import com.algebra.algebra_solver.service.EquationService;
+import com.algebra.algebra_solver.service.EquationSystems;
+import com.algebra.algebra_solver.service.EvaluationSession;
+import com.algebra.algebra_solver.service.EvaluationSessions;
+import com.algebra.algebra_solver.service.SingleFlight;
+import com.algebra.algebra_solver.service.SolveCache;
+import com.algebra.algebra_solver.service.SolveOptions;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 @RestController
 @RequestMapping("/api/equations")
 public class EquationController {
 
+    static final String NDJSON = "application/x-ndjson";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 10_000;
+    private static final int STREAM_FLUSH_ROWS = 512;
+    private static final int MAX_AXIS_POINTS = 1_000_000;
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper(JSON);
+
     private final EquationService service;
+    private final SingleFlight flights;
+    private final EvaluationSessions sessions;
+    private final EquationSystems systems;
 
-    public EquationController(EquationService service) {
+    public EquationController(EquationService service, SingleFlight flights, EvaluationSessions sessions,
+            EquationSystems systems) {
         this.service = service;
+        this.flights = flights;
+        this.sessions = sessions;
+        this.systems = systems;
+    }
+
+    // identical concurrent evaluate and solve calls share one computation
+    private record EvaluateCall(long id, Map<String, Double> variables) {
+    }
+
+    private record SolveCall(long id, String variable, Map<String, Double> knowns, SolveOptions options) {
     }
 
     public static class StoreRequest {
@@ -29,6 +71,20 @@ public class EquationController {
     public static class SolveRequest {
         public String variable;
         public Map<String, Double> knowns;
+        public String mode; // "exact" (default) or "auto": numeric fallback for non-polynomial equations
+        public boolean complex; // also report non-real roots
+    }
+
+    public static class SystemRequest {
+        public List<String> equationIds; // each read as expression = 0
+        public List<String> unknowns; // default: every variable that is not a known, in name order
+        public Map<String, Double> knowns;
+    }
+
+    public static class SweepRequest {
+        public String variable;
+        // per known: a number, a list of numbers, or {"from", "to"} with "step" or "count"
+        public Map<String, JsonNode> knowns;
     }
 
     @PostMapping(path = "/store", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -36,30 +92,131 @@ public class EquationController {
         Equation e = service.store(req.equation);
         Map<String, Object> body = new LinkedHashMap<>();
         body.put("message", "Equation stored successfully");
-        body.put("equationId", e.getId());
+        body.put("equationId", String.valueOf(e.getId()));
+        long duplicateOf = service.duplicateOf(e.getId());
+        if (duplicateOf != 0)
+            body.put("duplicateOf", String.valueOf(duplicateOf));
         return body;
     }
 
+    // Items are equation strings or {"equation": "..."} objects; each gets its own id or error.
+    @PostMapping(path = "/store/bulk", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> storeBulk(@RequestBody List<JsonNode> items) {
+        return bulk(items);
+    }
+
+    // Same items, one per line; blank lines are skipped and unreadable lines reported as errors.
+    @PostMapping(path = "/store/bulk", consumes = NDJSON, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> storeBulkNdjson(InputStream in) throws IOException {
+        List<JsonNode> items = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        for (String line; (line = reader.readLine()) != null;) {
+            if (line.isBlank())
+                continue;
+            try {
+                items.add(MAPPER.readTree(line));
+            } catch (JsonProcessingException ex) {
+                items.add(null);
+            }
+        }
+        return bulk(items);
+    }
+
+    private Map<String, Object> bulk(List<JsonNode> items) {
+        List<Map<String, Object>> rows = new ArrayList<>(items.size());
+        List<String> equations = new ArrayList<>(items.size());
+        int[] positions = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            JsonNode item = items.get(i);
+            if (item != null && item.isObject())
+                item = item.get("equation");
+            rows.add(null);
+            if (item == null || !item.isTextual()) {
+                rows.set(i, bulkRow(i, "error", "Invalid input: expected an equation string or {\"equation\": ...}"));
+                continue;
+            }
+            positions[equations.size()] = i;
+            equations.add(item.textValue());
+        }
+        int stored = 0;
+        for (EquationService.BulkResult r : service.storeAll(equations)) {
+            int i = positions[r.index];
+            if (r.error == null) {
+                rows.set(i, bulkRow(i, "equationId", String.valueOf(r.equationId)));
+                stored++;
+            } else {
+                rows.set(i, bulkRow(i, "error", r.error));
+            }
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("stored", stored);
+        body.put("failed", rows.size() - stored);
+        body.put("results", rows);
+        return body;
+    }
+
+    private static Map<String, Object> bulkRow(int index, String key, String value) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("index", index);
+        row.put(key, value);
+        return row;
+    }
+
+    // Without limit/after every equation is returned; otherwise one page plus the cursor of the next.
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public Map<String, Object> list() {
-        List<Map<String, Object>> arr = new ArrayList<>();
-        for (Equation e : service.list()) {
+    public Map<String, Object> list(@RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        if (limit == null && after == null) {
+            body.put("equations", rows(service.list()));
+            return body;
+        }
+        int size = Math.min(limit == null ? DEFAULT_PAGE_SIZE : limit, MAX_PAGE_SIZE);
+        List<Equation> page = service.page(cursor(after), size);
+        body.put("equations", rows(page));
+        body.put("nextCursor", page.size() == size ? String.valueOf(page.get(size - 1).getId()) : null);
+        return body;
+    }
+
+    private static List<Map<String, Object>> rows(List<Equation> equations) {
+        List<Map<String, Object>> arr = new ArrayList<>(equations.size());
+        for (Equation e : equations) {
             Map<String, Object> row = new LinkedHashMap<>();
-            row.put("equationId", e.getId());
+            row.put("equationId", String.valueOf(e.getId()));
             row.put("equation", e.getInfix());
             arr.add(row);
         }
-        Map<String, Object> body = new LinkedHashMap<>();
-        body.put("equations", arr);
-        return body;
+        return arr;
+    }
+
+    // One JSON object per line, written while the index is walked.
+    @GetMapping(path = "/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(required = false) String after) {
+        Iterable<Equation> equations = service.iterate(cursor(after));
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = JSON.createGenerator(out)) {
+                gen.setRootValueSeparator(null);
+                int n = 0;
+                for (Equation e : equations) {
+                    gen.writeStartObject();
+                    gen.writeStringField("equationId", String.valueOf(e.getId()));
+                    gen.writeStringField("equation", e.getInfix());
+                    gen.writeEndObject();
+                    gen.writeRaw('\n');
+                    if (++n % STREAM_FLUSH_ROWS == 0)
+                        gen.flush();
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
     }
 
     // 🔹 Get by ID
     @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Map<String, Object>> getById(@PathVariable String id) {
-        Equation e = service.get(id);
+        Equation e = service.get(equationId(id));
         Map<String, Object> body = new LinkedHashMap<>();
-        body.put("equationId", e.getId());
+        body.put("equationId", id);
         body.put("equation", e.getInfix());
         body.put("variables", e.getVariables());
         return ResponseEntity.ok(body);
@@ -67,39 +224,310 @@ public class EquationController {
 
     @PostMapping(path = "/{id}/evaluate", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public Map<String, Object> evaluate(@PathVariable String id, @RequestBody EvaluateRequest req) {
-        Equation e = service.get(id);
-        double result = service.evaluate(id, req == null ? Collections.emptyMap() : req.variables);
+        long key = equationId(id);
+        String infix = service.infixOf(key);
+        Map<String, Double> vars = req == null ? Collections.emptyMap() : req.variables;
+        double result = flights.run(new EvaluateCall(key, vars), () -> service.evaluate(key, vars));
         Map<String, Object> body = new LinkedHashMap<>();
-        body.put("equationId", e.getId());
-        body.put("equation", e.getInfix());
-        body.put("variables", req == null ? Collections.emptyMap() : req.variables);
+        body.put("equationId", id);
+        body.put("equation", infix);
+        body.put("variables", vars);
         body.put("result", result);
         return body;
     }
 
+    @PostMapping(path = "/{id}/evaluate/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> evaluateBatch(@PathVariable String id, @RequestBody Map<String, double[]> columns) {
+        long key = equationId(id);
+        String infix = service.infixOf(key);
+        double[] results = service.evaluateBatch(key, columns);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("equationId", id);
+        body.put("equation", infix);
+        body.put("count", results.length);
+        body.put("results", results);
+        return body;
+    }
+
+    @PostMapping(path = "/{id}/gradient", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> gradient(@PathVariable String id, @RequestBody EvaluateRequest req) {
+        long key = equationId(id);
+        String infix = service.infixOf(key);
+        Map<String, Double> vars = req == null || req.variables == null ? Collections.emptyMap() : req.variables;
+        EquationService.GradientResult g = service.gradient(key, vars);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("equationId", id);
+        body.put("equation", infix);
+        body.put("variables", vars);
+        body.put("value", g.value);
+        body.put("gradient", g.gradient);
+        return body;
+    }
+
     @PostMapping(path = "/{id}/solve", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public Map<String, Object> solve(@PathVariable String id, @RequestBody(required = false) SolveRequest req) {
         String variable = (req == null || req.variable == null || req.variable.isBlank()) ? "x" : req.variable;
         Map<String, Double> knowns = (req == null || req.knowns == null) ? Collections.emptyMap() : req.knowns;
-        EquationService.SolveResult s = service.solve(id, variable, knowns);
+        SolveOptions options = solveOptions(req);
+        long key = equationId(id);
+        EquationService.SolveResult s = flights.run(new SolveCall(key, variable, knowns, options),
+                () -> service.solve(key, variable, knowns, options));
         Map<String, Object> body = new LinkedHashMap<>();
-        body.put("equationId", s.equationId);
+        body.put("equationId", String.valueOf(s.equationId));
         body.put("equation", s.equation);
         body.put("variable", s.variable);
+        body.put("method", s.method);
+        if (s.convergence != null) {
+            body.put("solutions", s.solutions);
+            body.put("convergence", s.convergence);
+            return body;
+        }
         body.put("degree", s.degree);
-        Map<String, Object> coeffs = new LinkedHashMap<>();
-        coeffs.put("a", s.a);
-        coeffs.put("b", s.b);
-        coeffs.put("c", s.c);
-        body.put("coefficients", coeffs);
+        if (s.coefficients != null) {
+            body.put("coefficients", s.coefficients); // ascending powers
+        } else {
+            Map<String, Object> coeffs = new LinkedHashMap<>();
+            coeffs.put("a", s.a);
+            coeffs.put("b", s.b);
+            coeffs.put("c", s.c);
+            body.put("coefficients", coeffs);
+        }
         body.put("solutions", s.solutions);
+        if (options.complexRoots() && s.complexSolutions != null)
+            body.put("complexSolutions", s.complexSolutions);
+        return body;
+    }
+
+    // One line per grid point, in grid order: {"knowns": {...}, "solutions": [...]} or {"knowns": {...}, "error": "..."}
+    @PostMapping(path = "/{id}/solve/sweep", consumes = MediaType.APPLICATION_JSON_VALUE, produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> solveSweep(@PathVariable String id, @RequestBody SweepRequest req) {
+        String variable = req.variable == null || req.variable.isBlank() ? "x" : req.variable;
+        Map<String, double[]> axes = new LinkedHashMap<>();
+        if (req.knowns != null)
+            req.knowns.forEach((name, spec) -> axes.put(name, axis(name, spec)));
+        EquationService.Sweep sweep = service.sweep(equationId(id), variable, axes);
+        String[] names = axes.keySet().toArray(new String[0]);
+        double[][] values = axes.values().toArray(new double[0][]);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = JSON.createGenerator(out)) {
+                gen.setRootValueSeparator(null);
+                int[] digit = new int[names.length];
+                sweep.forEach(block -> {
+                    try {
+                        for (int i = 0; i < block.errors.length; i++) {
+                            gen.writeStartObject();
+                            gen.writeObjectFieldStart("knowns");
+                            for (int a = 0; a < names.length; a++)
+                                gen.writeNumberField(names[a], values[a][digit[a]]);
+                            gen.writeEndObject();
+                            if (block.errors[i] != null) {
+                                gen.writeStringField("error", block.errors[i]);
+                            } else {
+                                gen.writeFieldName("solutions");
+                                gen.writeArray(block.solutions[i], 0, block.solutions[i].length);
+                            }
+                            gen.writeEndObject();
+                            gen.writeRaw('\n');
+                            for (int a = names.length - 1; a >= 0 && ++digit[a] == values[a].length; a--)
+                                digit[a] = 0;
+                        }
+                        gen.flush();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    private static double[] axis(String name, JsonNode spec) {
+        if (spec != null && spec.isNumber())
+            return new double[] { spec.asDouble() };
+        if (spec != null && spec.isArray()) {
+            double[] v = new double[spec.size()];
+            for (int i = 0; i < v.length; i++) {
+                if (!spec.get(i).isNumber())
+                    throw new IllegalArgumentException("Values for '" + name + "' must be numbers");
+                v[i] = spec.get(i).asDouble();
+            }
+            return v;
+        }
+        if (spec != null && spec.isObject() && spec.path("from").isNumber() && spec.path("to").isNumber()) {
+            double from = spec.get("from").asDouble(), to = spec.get("to").asDouble();
+            long count;
+            boolean byCount = spec.path("count").isIntegralNumber();
+            if (byCount) {
+                count = spec.get("count").asLong();
+            } else if (spec.path("step").isNumber() && spec.get("step").asDouble() > 0 && to >= from) {
+                count = (long) Math.floor((to - from) / spec.get("step").asDouble() + 1e-9) + 1;
+            } else {
+                throw new IllegalArgumentException("Range for '" + name + "' needs a positive step or a count");
+            }
+            if (count < 1 || count > MAX_AXIS_POINTS)
+                throw new IllegalArgumentException(
+                        "Range for '" + name + "' must have 1.." + MAX_AXIS_POINTS + " points");
+            double[] v = new double[(int) count];
+            double step = count == 1 ? 0.0 : byCount ? (to - from) / (count - 1) : spec.get("step").asDouble();
+            for (int i = 0; i < v.length; i++)
+                v[i] = from + i * step;
+            return v;
+        }
+        throw new IllegalArgumentException(
+                "Values for '" + name + "' must be a number, a list of numbers or a {from, to, step|count} range");
+    }
+
+    // Ids are rendered as decimal strings; anything else names no equation. Parsed once here, so the
+    // service and stores work on the number.
+    private static long equationId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 18)
+            throw notFound(id);
+        long v = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9' || (c == '0' && i == 0))
+                throw notFound(id);
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static EquationNotFoundException notFound(String id) {
+        return new EquationNotFoundException("Equation id " + id + " not found");
+    }
+
+    private static long cursor(String after) {
+        if (after == null || after.isBlank())
+            return 0;
+        try {
+            return Long.parseLong(after.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid cursor '" + after + "'");
+        }
+    }
+
+    private static SolveOptions solveOptions(SolveRequest req) {
+        String mode = req == null || req.mode == null || req.mode.isBlank() ? "exact" : req.mode;
+        SolveOptions options = switch (mode) {
+            case "exact" -> SolveOptions.exact();
+            case "auto" -> SolveOptions.auto();
+            default -> throw new IllegalArgumentException("Unknown solve mode '" + mode + "', expected exact or auto");
+        };
+        return req != null && req.complex ? options.complex() : options;
+    }
+
+    @GetMapping(path = "/cache/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> solveCacheStats() {
+        SolveCache.Stats s = service.solveCacheStats();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("size", s.size);
+        body.put("maxSize", s.maxSize);
+        body.put("hits", s.hits);
+        body.put("misses", s.misses);
+        body.put("hitRate", s.hitRate);
+        body.put("evictions", s.evictions);
+        return body;
+    }
+
+    @PostMapping(path = "/systems/solve", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> solveSystem(@RequestBody SystemRequest req) {
+        List<Long> ids = null;
+        if (req.equationIds != null) {
+            ids = new ArrayList<>(req.equationIds.size());
+            for (String id : req.equationIds)
+                ids.add(equationId(id));
+        }
+        EquationSystems.Result r = systems.solve(ids, req.unknowns, req.knowns);
+        List<String> equationIds = new ArrayList<>(r.equationIds.size());
+        for (long id : r.equationIds)
+            equationIds.add(String.valueOf(id));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("equationIds", equationIds);
+        body.put("solution", r.solution);
+        body.put("method", r.method);
+        body.put("iterations", r.iterations);
+        body.put("residual", r.residual);
+        return body;
+    }
+
+    // Sessions: bind every variable once, then change a few at a time; only what depends on them is re-evaluated
+    @PostMapping(path = "/{id}/sessions", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> openSession(@PathVariable String id, @RequestBody EvaluateRequest req) {
+        EvaluationSession session = sessions.open(equationId(id), variables(req));
+        return sessionBody(session, session.current());
+    }
+
+    @GetMapping(path = "/sessions/{sid}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> getSession(@PathVariable String sid) {
+        EvaluationSession session = sessions.get(sid);
+        return sessionBody(session, session.current());
+    }
+
+    @PatchMapping(path = "/sessions/{sid}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> updateSession(@PathVariable String sid, @RequestBody EvaluateRequest req) {
+        EvaluationSession session = sessions.get(sid);
+        return sessionBody(session, session.update(variables(req)));
+    }
+
+    // Server-sent "result" events: the current result, then one per update, until the session is closed
+    @GetMapping(path = "/sessions/{sid}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter sessionEvents(@PathVariable String sid) {
+        EvaluationSession session = sessions.get(sid);
+        SseEmitter emitter = new SseEmitter(0L);
+        EvaluationSession.Listener listener = new EvaluationSession.Listener() {
+            @Override
+            public void onResult(EvaluationSession.Snapshot snapshot) {
+                try {
+                    emitter.send(SseEmitter.event().name("result").id(String.valueOf(snapshot.version))
+                            .data(sessionBody(session, snapshot), MediaType.APPLICATION_JSON));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+
+            @Override
+            public void onClose() {
+                emitter.complete();
+            }
+        };
+        emitter.onCompletion(() -> session.unsubscribe(listener));
+        emitter.onError(ex -> session.unsubscribe(listener));
+        session.subscribe(listener);
+        return emitter;
+    }
+
+    @DeleteMapping(path = "/sessions/{sid}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> closeSession(@PathVariable String sid) {
+        sessions.close(sid);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("message", "Session closed successfully");
+        body.put("sessionId", sid);
+        return body;
+    }
+
+    private static Map<String, Double> variables(EvaluateRequest req) {
+        return req == null || req.variables == null ? Collections.emptyMap() : req.variables;
+    }
+
+    private static Map<String, Object> sessionBody(EvaluationSession session, EvaluationSession.Snapshot snapshot) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("sessionId", session.getId());
+        body.put("equationId", String.valueOf(session.getEquationId()));
+        body.put("equation", session.getEquation());
+        body.put("version", snapshot.version);
+        body.put("variables", snapshot.variables);
+        body.put("result", snapshot.result);
+        body.put("recomputed", snapshot.recomputed);
+        body.put("nodes", snapshot.nodes);
         return body;
     }
 
     // 🔹 Delete
     @DeleteMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public Map<String, Object> delete(@PathVariable String id) {
-        service.delete(id);
+        long key = equationId(id);
+        service.delete(key);
+        sessions.closeAll(key);
         Map<String, Object> body = new LinkedHashMap<>();
         body.put("message", "Equation deleted successfully");
         body.put("equationId", id);
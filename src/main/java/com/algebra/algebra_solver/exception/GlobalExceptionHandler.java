@@ -1,5 +1,6 @@
 package com.algebra.algebra_solver.exception;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -10,9 +11,20 @@ import java.util.Map;
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    private final MeterRegistry registry;
+
+    public GlobalExceptionHandler(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
     @ExceptionHandler(EquationNotFoundException.class)
     public ResponseEntity<Map<String, Object>> notFound(EquationNotFoundException ex) {
-        return error(HttpStatus.NOT_FOUND, ex.getMessage());
+        return error(ex, HttpStatus.NOT_FOUND, ex.getMessage());
+    }
+
+    @ExceptionHandler(SessionNotFoundException.class)
+    public ResponseEntity<Map<String, Object>> sessionNotFound(SessionNotFoundException ex) {
+        return error(ex, HttpStatus.NOT_FOUND, ex.getMessage());
     }
 
     @ExceptionHandler(InvalidEquationException.class)
@@ -20,29 +32,31 @@ public class GlobalExceptionHandler {
         String msg = ex.getMessage();
         if (msg != null && msg.contains("No real roots")) {
             // Treat unsolvable math equations separately
-            return error(HttpStatus.UNPROCESSABLE_ENTITY, "Math error: " + msg);
+            return error(ex, HttpStatus.UNPROCESSABLE_ENTITY, "Math error: " + msg);
         }
-        return error(HttpStatus.BAD_REQUEST, "Invalid equation: " + msg);
+        return error(ex, HttpStatus.BAD_REQUEST, "Invalid equation: " + msg);
     }
 
     @ExceptionHandler({ IllegalArgumentException.class })
     public ResponseEntity<Map<String, Object>> badInput(IllegalArgumentException ex) {
         // Keep "Invalid input" consistent with tests too
-        return error(HttpStatus.BAD_REQUEST, "Invalid input: " + ex.getMessage());
+        return error(ex, HttpStatus.BAD_REQUEST, "Invalid input: " + ex.getMessage());
     }
 
     @ExceptionHandler(ArithmeticException.class)
     public ResponseEntity<Map<String, Object>> mathError(ArithmeticException ex) {
         // 422 is more correct for unsolvable / math errors
-        return error(HttpStatus.UNPROCESSABLE_ENTITY, "Math error: " + ex.getMessage());
+        return error(ex, HttpStatus.UNPROCESSABLE_ENTITY, "Math error: " + ex.getMessage());
     }
 
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> unknown(Exception ex) {
-        return error(HttpStatus.INTERNAL_SERVER_ERROR, "Unexpected error: " + ex.getMessage());
+        return error(ex, HttpStatus.INTERNAL_SERVER_ERROR, "Unexpected error: " + ex.getMessage());
     }
 
-    private ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+    private ResponseEntity<Map<String, Object>> error(Exception ex, HttpStatus status, String message) {
+        registry.counter("equations.errors", "exception", ex.getClass().getSimpleName(),
+                "status", String.valueOf(status.value())).increment();
         Map<String, Object> body = new LinkedHashMap<>();
         body.put("error", status.getReasonPhrase());
         body.put("status", status.value());
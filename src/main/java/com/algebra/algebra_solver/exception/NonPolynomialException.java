@@ -0,0 +1,8 @@
+package com.algebra.algebra_solver.exception;
+
+/** The equation is valid but outside what the polynomial solver handles; a numeric solve may still work. */
+public class NonPolynomialException extends InvalidEquationException {
+    public NonPolynomialException(String message) {
+        super(message);
+    }
+}
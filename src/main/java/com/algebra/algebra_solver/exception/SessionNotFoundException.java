@@ -0,0 +1,7 @@
+package com.algebra.algebra_solver.exception;
+
+public class SessionNotFoundException extends RuntimeException {
+    public SessionNotFoundException(String message) {
+        super(message);
+    }
+}
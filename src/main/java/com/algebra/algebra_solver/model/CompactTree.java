@@ -0,0 +1,251 @@
+package com.algebra.algebra_solver.model;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Expression tree stored as parallel primitive arrays instead of a graph of
+ * {@link Node} objects. Nodes are kept in postfix order; for node {@code i}
+ * {@code ops[i]} is a {@link CompiledExpression} opcode and {@code args[i]}
+ * is, by opcode:
+ * <ul>
+ * <li>{@code CONST}: index into {@code constants}</li>
+ * <li>{@code LOAD}: the variable's {@link SymbolTable} id</li>
+ * <li>an operator: the index of its left operand; the right operand is always
+ * node {@code i - 1}</li>
+ * </ul>
+ * A number token is only kept (as a symbol id in {@code tokens}) when it is
+ * not the canonical rendering of its value, e.g. {@code 2.50}; the array is
+ * null when no constant needs one.
+ * <p>
+ * Two trees are equal when their arrays are, so a tree built from a
+ * hash-consed {@link Node} is a canonical key for it. {@link #toNode()}
+ * rebuilds a plain node graph on demand; nothing here holds on to it.
+ */
+public final class CompactTree {
+    private final byte[] ops;
+    private final int[] args;
+    private final double[] constants;
+    private final int[] tokens; // per constant, symbol id of the token or -1 when canonical; null when all are
+    private final int hash;
+
+    private CompactTree(byte[] ops, int[] args, double[] constants, int[] tokens) {
+        this.ops = ops;
+        this.args = args;
+        this.constants = constants;
+        this.tokens = tokens;
+        this.hash = (31 * (31 * Arrays.hashCode(ops) + Arrays.hashCode(args)) + Arrays.hashCode(constants)) * 31
+                + Arrays.hashCode(tokens);
+    }
+
+    public static CompactTree of(Node root) {
+        Builder b = new Builder();
+        root.fold(b::operand, b::operator);
+        return b.build();
+    }
+
+    /** Number of nodes. */
+    public int size() {
+        return ops.length;
+    }
+
+    public int opcode(int node) {
+        return ops[node];
+    }
+
+    /** Constant index, symbol id or left operand index of {@code node}; see the class comment. */
+    public int arg(int node) {
+        return args[node];
+    }
+
+    public double constant(int index) {
+        return constants[index];
+    }
+
+    /** Text of a {@code CONST} or {@code LOAD} node, as {@link #toNode()} renders its operand. */
+    public String operand(int node) {
+        return ops[node] == CompiledExpression.LOAD ? SymbolTable.name(args[node]) : token(args[node]);
+    }
+
+    /** Bytes {@link #writeTo} takes. */
+    public int encodedSize() {
+        return 9 + ops.length * 5 + constants.length * 8 + (tokens == null ? 0 : tokens.length * 4);
+    }
+
+    /**
+     * Write the arrays at the buffer's position: node and constant counts, a
+     * flag for the token array, then each array in turn.
+     */
+    public void writeTo(ByteBuffer buf) {
+        buf.putInt(ops.length).putInt(constants.length).put((byte) (tokens == null ? 0 : 1)).put(ops);
+        for (int a : args)
+            buf.putInt(a);
+        for (double c : constants)
+            buf.putDouble(c);
+        if (tokens != null)
+            for (int t : tokens)
+                buf.putInt(t);
+    }
+
+    /** Read a tree written by {@link #writeTo}, advancing the buffer's position. */
+    public static CompactTree readFrom(ByteBuffer buf) {
+        int n = buf.getInt(), k = buf.getInt();
+        boolean hasTokens = buf.get() != 0;
+        byte[] ops = new byte[n];
+        buf.get(ops);
+        int[] args = new int[n];
+        for (int i = 0; i < n; i++)
+            args[i] = buf.getInt();
+        double[] constants = new double[k];
+        for (int i = 0; i < k; i++)
+            constants[i] = buf.getDouble();
+        int[] tokens = null;
+        if (hasTokens) {
+            tokens = new int[k];
+            for (int i = 0; i < k; i++)
+                tokens[i] = buf.getInt();
+        }
+        return new CompactTree(ops, args, constants, tokens);
+    }
+
+    /** Rebuild the tree as nodes, in one pass over the arrays. */
+    public Node toNode() {
+        Node[] stack = new Node[16];
+        int top = 0;
+        for (int i = 0; i < ops.length; i++) {
+            Node n = switch (ops[i]) {
+                case CompiledExpression.CONST -> new OperandNode(token(args[i]));
+                case CompiledExpression.LOAD -> new OperandNode(SymbolTable.name(args[i]));
+                default -> {
+                    Node r = stack[--top], l = stack[--top];
+                    yield new OperatorNode(operator(ops[i]), l, r);
+                }
+            };
+            if (top == stack.length)
+                stack = Arrays.copyOf(stack, top * 2);
+            stack[top++] = n;
+        }
+        return stack[0];
+    }
+
+    /** Variable names in name order. */
+    public Set<String> variables() {
+        Set<String> vars = new TreeSet<>();
+        for (int i = 0; i < ops.length; i++)
+            if (ops[i] == CompiledExpression.LOAD)
+                vars.add(SymbolTable.name(args[i]));
+        return Collections.unmodifiableSet(vars);
+    }
+
+    /** Heap size of this object and its arrays; names in the symbol table are not counted. */
+    public long sizeInBytes() {
+        return Footprint.object(4, 4) + Footprint.array(ops.length, 1) + Footprint.array(args.length, 4)
+                + Footprint.array(constants.length, 8) + (tokens == null ? 0 : Footprint.array(tokens.length, 4));
+    }
+
+    private String token(int constant) {
+        if (tokens != null && tokens[constant] >= 0)
+            return SymbolTable.name(tokens[constant]);
+        return canonical(constants[constant]);
+    }
+
+    // same rendering ExpressionSimplifier gives folded constants; null for overflowed literals
+    private static String canonical(double v) {
+        if (!Double.isFinite(v))
+            return null;
+        return v == 0.0 ? "0" : BigDecimal.valueOf(v).stripTrailingZeros().toPlainString();
+    }
+
+    private static String operator(int opcode) {
+        return switch (opcode) {
+            case CompiledExpression.ADD -> "+";
+            case CompiledExpression.SUB -> "-";
+            case CompiledExpression.MUL -> "*";
+            case CompiledExpression.DIV -> "/";
+            case CompiledExpression.POW -> "^";
+            default -> throw new IllegalStateException("Bad opcode: " + opcode);
+        };
+    }
+
+    private static int opcodeOf(String op) {
+        return switch (op) {
+            case "+" -> CompiledExpression.ADD;
+            case "-" -> CompiledExpression.SUB;
+            case "*" -> CompiledExpression.MUL;
+            case "/" -> CompiledExpression.DIV;
+            case "^" -> CompiledExpression.POW;
+            default -> throw new IllegalArgumentException("Unknown operator: " + op);
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof CompactTree t && hash == t.hash && Arrays.equals(ops, t.ops)
+                && Arrays.equals(args, t.args) && Arrays.equals(constants, t.constants)
+                && Arrays.equals(tokens, t.tokens);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    // fold() visits nodes in postfix order, so each node's index is its position in the arrays
+    private static final class Builder {
+        byte[] ops = new byte[16];
+        int[] args = new int[16];
+        int size;
+        double[] constants = new double[8];
+        int[] tokens; // allocated on the first non-canonical token
+        int constCount;
+
+        Integer operand(OperandNode o) {
+            if (!o.isNumber())
+                return add(CompiledExpression.LOAD, SymbolTable.id(o.getToken()));
+            if (constCount == constants.length)
+                constants = Arrays.copyOf(constants, constCount * 2);
+            constants[constCount] = o.getValue();
+            if (!o.getToken().equals(canonical(o.getValue()))) {
+                if (tokens == null) {
+                    tokens = new int[constants.length];
+                    Arrays.fill(tokens, -1);
+                } else if (tokens.length < constants.length) {
+                    int from = tokens.length;
+                    tokens = Arrays.copyOf(tokens, constants.length);
+                    Arrays.fill(tokens, from, tokens.length, -1);
+                }
+                tokens[constCount] = SymbolTable.id(o.getToken());
+            }
+            return add(CompiledExpression.CONST, constCount++);
+        }
+
+        Integer operator(OperatorNode op, Integer left, Integer right) {
+            return add(opcodeOf(op.getOp()), left);
+        }
+
+        private int add(int opcode, int arg) {
+            if (size == ops.length) {
+                ops = Arrays.copyOf(ops, size * 2);
+                args = Arrays.copyOf(args, size * 2);
+            }
+            ops[size] = (byte) opcode;
+            args[size] = arg;
+            return size++;
+        }
+
+        CompactTree build() {
+            int[] t = null;
+            if (tokens != null) {
+                t = Arrays.copyOf(tokens, constCount);
+                if (tokens.length < constCount)
+                    Arrays.fill(t, tokens.length, constCount, -1);
+            }
+            return new CompactTree(Arrays.copyOf(ops, size), Arrays.copyOf(args, size),
+                    Arrays.copyOf(constants, constCount), t);
+        }
+    }
+}
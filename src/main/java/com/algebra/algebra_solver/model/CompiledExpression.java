@@ -0,0 +1,279 @@
+package com.algebra.algebra_solver.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Flat postfix program compiled once from an expression tree. Each instruction
+ * packs its operand above the opcode ({@code operand << OP_BITS | opcode});
+ * constants are pre-parsed into a pool and variables are resolved to slots, so
+ * evaluation is a single loop over primitive arrays.
+ * <p>
+ * Programs that are evaluated often can be given a {@link Kernel}, the same
+ * program as generated bytecode (see {@code BytecodeCompiler}); once set,
+ * evaluation goes through it instead of the interpreter loop.
+ */
+public final class CompiledExpression {
+    public static final int CONST = 0;
+    public static final int LOAD = 1;
+    public static final int ADD = 2;
+    public static final int SUB = 3;
+    public static final int MUL = 4;
+    public static final int DIV = 5;
+    public static final int POW = 6;
+
+    public static final int OP_BITS = 3;
+    public static final int OP_MASK = (1 << OP_BITS) - 1;
+
+    // per-thread scratch buffers: evaluation never re-enters itself
+    private static final ThreadLocal<double[][]> SCRATCH = ThreadLocal.withInitial(() -> new double[][] {
+            new double[32], new double[32] });
+
+    private final int[] code;
+    private final double[] constants;
+    private final String[] slots;
+    private final int maxStack;
+
+    // tiering: evaluations is a racy hint, promoted is claimed once, kernel is set at most once
+    private int evaluations;
+    private final AtomicBoolean promoted = new AtomicBoolean();
+    private volatile Kernel kernel;
+
+    /** A program compiled to a class of its own. */
+    public interface Kernel {
+        double eval(double[] slots);
+    }
+
+    public CompiledExpression(int[] code, double[] constants, String[] slots, int maxStack) {
+        this.code = code;
+        this.constants = constants;
+        this.slots = slots;
+        this.maxStack = maxStack;
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    public double[] getConstants() {
+        return constants;
+    }
+
+    /** Variable names in slot order (first occurrence in the tree). */
+    public String[] getSlots() {
+        return slots;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Count {@code n} evaluations; returns true, exactly once, for the caller
+     * that takes this program past {@code threshold} and should compile it.
+     */
+    public boolean countEvaluations(int n, int threshold) {
+        if (promoted.get() || (evaluations += n) < threshold)
+            return false;
+        return promoted.compareAndSet(false, true);
+    }
+
+    public Kernel getKernel() {
+        return kernel;
+    }
+
+    public void setKernel(Kernel kernel) {
+        this.kernel = kernel;
+    }
+
+    /** Heap size of the program and its arrays; slot names and a kernel class are not counted. */
+    public long sizeInBytes() {
+        return Footprint.object(5, 8) + Footprint.object(0, 4) + Footprint.array(code.length, 4)
+                + Footprint.array(constants.length, 8) + Footprint.references(slots.length);
+    }
+
+    /** Evaluate with named variables, resolving each slot once. */
+    public double evaluate(Map<String, Double> vars) {
+        double[][] scratch = SCRATCH.get();
+        if (scratch[0].length < slots.length)
+            scratch[0] = new double[slots.length];
+        double[] values = scratch[0];
+        for (int i = 0; i < slots.length; i++) {
+            Double v = vars.get(slots[i]);
+            if (v == null)
+                throw new IllegalArgumentException("Missing variable value for '" + slots[i] + "'");
+            values[i] = v;
+        }
+        return evaluate(values);
+    }
+
+    /**
+     * Value and all partial derivatives in one forward pass over the program:
+     * every stack entry is a dual number carrying one tangent per slot.
+     * {@code partials[i]} receives the derivative with respect to slot i.
+     */
+    public double gradient(Map<String, Double> vars, double[] partials) {
+        int n = slots.length;
+        double[] values = new double[n];
+        int[] tangentOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            Double v = vars.get(slots[i]);
+            if (v == null)
+                throw new IllegalArgumentException("Missing variable value for '" + slots[i] + "'");
+            values[i] = v;
+            tangentOf[i] = i;
+        }
+        return forward(values, tangentOf, n, partials);
+    }
+
+    /** Value at {@code values}, with the derivative with respect to {@code slot} in {@code derivative[0]}. */
+    public double derivative(double[] values, int slot, double[] derivative) {
+        int[] tangentOf = new int[slots.length];
+        Arrays.fill(tangentOf, -1);
+        tangentOf[slot] = 0;
+        return forward(values, tangentOf, 1, derivative);
+    }
+
+    // Dual-number evaluation with m tangents; tangentOf maps a slot to its tangent or -1.
+    private double forward(double[] values, int[] tangentOf, int m, double[] partials) {
+        double[] stack = new double[maxStack];
+        double[] tangents = new double[maxStack * m]; // entry k owns [k*m, (k+1)*m)
+        int sp = 0;
+        for (int ins : code) {
+            int op = ins & OP_MASK;
+            if (op == CONST || op == LOAD) {
+                int t = sp * m;
+                Arrays.fill(tangents, t, t + m, 0.0);
+                if (op == CONST) {
+                    stack[sp++] = constants[ins >>> OP_BITS];
+                } else {
+                    stack[sp++] = values[ins >>> OP_BITS];
+                    if (tangentOf[ins >>> OP_BITS] >= 0)
+                        tangents[t + tangentOf[ins >>> OP_BITS]] = 1.0;
+                }
+                continue;
+            }
+            sp--;
+            double a = stack[sp - 1], b = stack[sp];
+            int ta = (sp - 1) * m, tb = sp * m;
+            switch (op) {
+                case ADD -> {
+                    stack[sp - 1] = a + b;
+                    for (int j = 0; j < m; j++)
+                        tangents[ta + j] += tangents[tb + j];
+                }
+                case SUB -> {
+                    stack[sp - 1] = a - b;
+                    for (int j = 0; j < m; j++)
+                        tangents[ta + j] -= tangents[tb + j];
+                }
+                case MUL -> {
+                    stack[sp - 1] = a * b;
+                    for (int j = 0; j < m; j++)
+                        tangents[ta + j] = tangents[ta + j] * b + a * tangents[tb + j];
+                }
+                case DIV -> {
+                    double q = divide(a, b);
+                    stack[sp - 1] = q;
+                    for (int j = 0; j < m; j++)
+                        tangents[ta + j] = (tangents[ta + j] - q * tangents[tb + j]) / b;
+                }
+                case POW -> {
+                    double p = Math.pow(a, b);
+                    stack[sp - 1] = p;
+                    // only form the terms that are needed: ln(a) is NaN for a <= 0
+                    // even when the exponent is a constant
+                    double da = Double.NaN, db = Double.NaN;
+                    for (int j = 0; j < m; j++) {
+                        double d = 0.0;
+                        if (tangents[ta + j] != 0.0) {
+                            if (Double.isNaN(da))
+                                da = b * Math.pow(a, b - 1);
+                            d += da * tangents[ta + j];
+                        }
+                        if (tangents[tb + j] != 0.0) {
+                            if (Double.isNaN(db))
+                                db = p * Math.log(a);
+                            d += db * tangents[tb + j];
+                        }
+                        tangents[ta + j] = d;
+                    }
+                }
+                default -> throw new IllegalStateException("Bad opcode: " + op);
+            }
+        }
+        System.arraycopy(tangents, 0, partials, 0, m);
+        return stack[0];
+    }
+
+    /** Evaluate with slot values laid out as in {@link #getSlots()}. */
+    public double evaluate(double[] values) {
+        Kernel k = kernel;
+        if (k != null)
+            return k.eval(values);
+        double[][] scratch = SCRATCH.get();
+        if (scratch[1].length < maxStack)
+            scratch[1] = new double[maxStack];
+        return run(values, scratch[1]);
+    }
+
+    /**
+     * Evaluate rows {@code [from, to)} of column-major input into {@code out};
+     * {@code columns} is indexed by slot.
+     */
+    public void evaluateRows(double[][] columns, int from, int to, double[] out) {
+        double[] values = new double[slots.length];
+        double[] stack = new double[maxStack];
+        Kernel k = kernel;
+        for (int row = from; row < to; row++) {
+            for (int s = 0; s < values.length; s++)
+                values[s] = columns[s][row];
+            try {
+                out[row] = k != null ? k.eval(values) : run(values, stack);
+            } catch (ArithmeticException ex) {
+                throw new ArithmeticException(ex.getMessage() + " at row " + row);
+            }
+        }
+    }
+
+    /** Evaluate on a caller-owned stack of at least {@link #getMaxStack()} entries. */
+    public double run(double[] values, double[] stack) {
+        int sp = 0;
+        for (int ins : code) {
+            switch (ins & OP_MASK) {
+                case CONST -> stack[sp++] = constants[ins >>> OP_BITS];
+                case LOAD -> stack[sp++] = values[ins >>> OP_BITS];
+                case ADD -> {
+                    sp--;
+                    stack[sp - 1] += stack[sp];
+                }
+                case SUB -> {
+                    sp--;
+                    stack[sp - 1] -= stack[sp];
+                }
+                case MUL -> {
+                    sp--;
+                    stack[sp - 1] *= stack[sp];
+                }
+                case DIV -> {
+                    sp--;
+                    stack[sp - 1] = divide(stack[sp - 1], stack[sp]);
+                }
+                case POW -> {
+                    sp--;
+                    stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]);
+                }
+                default -> throw new IllegalStateException("Bad opcode: " + (ins & OP_MASK));
+            }
+        }
+        return stack[0];
+    }
+
+    /** Division as every tier performs it: near-zero divisors are an error. */
+    public static double divide(double a, double b) {
+        if (Math.abs(b) < 1e-12)
+            throw new ArithmeticException("Division by zero");
+        return a / b;
+    }
+}
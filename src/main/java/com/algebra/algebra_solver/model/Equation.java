@@ -1,27 +1,42 @@
 package com.algebra.algebra_solver.model;
 
+import com.algebra.algebra_solver.util.MultiPolynomial;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * A stored equation. The simplified tree is held as a {@link CompactTree};
+ * {@link #getRoot()} is rebuilt from it on each call rather than kept
+ * alongside, so an equation costs its text, its id, its variable names and a
+ * share of the tree and compiled forms it has in common with its twins.
+ * Callers on hot paths use the tree itself.
+ */
 public class Equation {
-    private String id;
+    private long id;
     private String infix; // human-friendly infix reconstructed from tree
     @JsonIgnore
-    private Node root; // expression tree (postfix tree)
-    private Set<String> variables;
+    private CompactTree tree; // simplified expression tree
+    @JsonIgnore
+    private CompiledExpression program; // flat postfix form used by evaluate
+    @JsonIgnore
+    private MultiPolynomial polynomial; // expanded form used by solve, null if not expandable
+    private volatile Set<String> variables; // derived on first use; reset when the tree or program changes
 
     public Equation() {
     }
 
-    public Equation(String id, String infix, Node root, Set<String> variables) {
+    public Equation(long id, String infix, CompactTree tree, CompiledExpression program) {
         this.id = id;
         this.infix = infix;
-        this.root = root;
-        this.variables = variables;
+        this.tree = tree;
+        this.program = program;
     }
 
-    public String getId() {
+    public long getId() {
         return id;
     }
 
@@ -29,16 +44,40 @@ public class Equation {
         return infix;
     }
 
+    /** The tree as nodes, materialised from the compact form on every call. */
     @JsonIgnore
     public Node getRoot() {
-        return root;
+        return tree.toNode();
+    }
+
+    @JsonIgnore
+    public CompactTree getTree() {
+        return tree;
     }
 
+    /** Variable names in name order. */
     public Set<String> getVariables() {
-        return variables;
+        Set<String> vars = variables;
+        if (vars == null) {
+            // the program's slots are the same names, without a walk over the tree
+            vars = program != null ? Collections.unmodifiableSet(new TreeSet<>(Arrays.asList(program.getSlots())))
+                    : tree.variables();
+            variables = vars;
+        }
+        return vars;
+    }
+
+    @JsonIgnore
+    public CompiledExpression getProgram() {
+        return program;
     }
 
-    public void setId(String id) {
+    @JsonIgnore
+    public MultiPolynomial getPolynomial() {
+        return polynomial;
+    }
+
+    public void setId(long id) {
         this.id = id;
     }
 
@@ -47,10 +86,20 @@ public class Equation {
     }
 
     public void setRoot(Node root) {
-        this.root = root;
+        setTree(CompactTree.of(root));
+    }
+
+    public void setTree(CompactTree tree) {
+        this.tree = tree;
+        this.variables = null;
+    }
+
+    public void setProgram(CompiledExpression program) {
+        this.program = program;
+        this.variables = null;
     }
 
-    public void setVariables(Set<String> variables) {
-        this.variables = variables;
+    public void setPolynomial(MultiPolynomial polynomial) {
+        this.polynomial = polynomial;
     }
 }
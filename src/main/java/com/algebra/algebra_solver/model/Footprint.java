@@ -0,0 +1,33 @@
+package com.algebra.algebra_solver.model;
+
+/**
+ * Shallow heap sizes for the footprint estimates of stored equations, for a
+ * 64-bit JVM with compressed references: 12-byte object headers, 16-byte
+ * array headers, 4-byte references and 8-byte alignment.
+ */
+public final class Footprint {
+    private Footprint() {
+    }
+
+    /** An object with {@code references} reference fields and {@code primitiveBytes} of other fields. */
+    public static long object(int references, int primitiveBytes) {
+        return align(12 + 4L * references + primitiveBytes);
+    }
+
+    public static long array(int length, int elementBytes) {
+        return align(16 + (long) length * elementBytes);
+    }
+
+    public static long references(int length) {
+        return array(length, 4);
+    }
+
+    /** A string and its backing array, assuming Latin-1 text (compact strings). */
+    public static long string(String s) {
+        return s == null ? 0 : object(1, 12) + array(s.length(), 1);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
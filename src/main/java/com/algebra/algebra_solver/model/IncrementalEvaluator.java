@@ -0,0 +1,180 @@
+package com.algebra.algebra_solver.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Evaluates a {@link CompactTree} once and remembers every node's value, so
+ * that when some variables change only the nodes on the paths from their
+ * occurrences up to the root are computed again. Those nodes are recomputed
+ * in postfix order, children before parents, so each one reads operands that
+ * are already current; every other node keeps its memoised value.
+ * <p>
+ * Arithmetic is the same as in {@link Node#evaluate} and
+ * {@link CompiledExpression}. Not thread-safe: callers serialise access.
+ */
+public final class IncrementalEvaluator {
+    private final CompactTree tree;
+    private final int[] operand; // per node: constant index, variable index or left operand
+    private final int[] parent; // per node, -1 for the root
+    private final String[] names; // variables in name order
+    private final Map<String, Integer> index = new HashMap<>();
+    private final int[][] occurrences; // per variable, its LOAD nodes
+    private final double[] inputs; // per variable
+    private final double[] values; // per node
+    private final int[] mark; // per node, the update that last queued it
+    private int epoch;
+    private int[] dirty = new int[16];
+    private double[] saved = new double[16];
+    private int recomputed;
+
+    /** Bind every variable of {@code tree} from {@code vars} and evaluate all of it. */
+    public IncrementalEvaluator(CompactTree tree, Map<String, Double> vars) {
+        int n = tree.size();
+        this.tree = tree;
+        this.operand = new int[n];
+        this.parent = new int[n];
+        this.values = new double[n];
+        this.mark = new int[n];
+        this.names = tree.variables().toArray(new String[0]);
+        for (int v = 0; v < names.length; v++)
+            index.put(names[v], v);
+        this.inputs = new double[names.length];
+
+        int[] counts = new int[names.length];
+        parent[n - 1] = -1;
+        for (int i = 0; i < n; i++) {
+            int op = tree.opcode(i);
+            if (op == CompiledExpression.LOAD) {
+                String name = SymbolTable.name(tree.arg(i));
+                int v = index.get(name);
+                Double x = vars.get(name);
+                if (x == null)
+                    throw new IllegalArgumentException("Missing variable value for '" + name + "'");
+                inputs[v] = x;
+                operand[i] = v;
+                counts[v]++;
+            } else {
+                operand[i] = tree.arg(i);
+                if (op != CompiledExpression.CONST) {
+                    parent[operand[i]] = i;
+                    parent[i - 1] = i;
+                }
+            }
+        }
+        this.occurrences = new int[names.length][];
+        for (int v = 0; v < names.length; v++)
+            occurrences[v] = new int[counts[v]];
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < n; i++)
+            if (tree.opcode(i) == CompiledExpression.LOAD)
+                occurrences[operand[i]][counts[operand[i]]++] = i;
+
+        for (int i = 0; i < n; i++)
+            values[i] = compute(i);
+        recomputed = n;
+    }
+
+    /**
+     * Apply new values for some variables and recompute the nodes that depend
+     * on them. Names the tree does not use are ignored. If evaluation fails,
+     * e.g. on a division by zero, the previous values are kept.
+     */
+    public double update(Map<String, Double> changes) {
+        int[] changed = new int[Math.min(changes.size(), names.length)];
+        double[] next = new double[changed.length];
+        int c = 0;
+        for (Map.Entry<String, Double> entry : changes.entrySet()) {
+            Integer v = index.get(entry.getKey());
+            if (v == null)
+                continue;
+            if (entry.getValue() == null)
+                throw new IllegalArgumentException("Missing variable value for '" + entry.getKey() + "'");
+            if (Double.compare(inputs[v], entry.getValue()) != 0) {
+                changed[c] = v;
+                next[c++] = entry.getValue();
+            }
+        }
+
+        // queue each changed occurrence and its ancestors, stopping where another path already did
+        int d = 0;
+        epoch++;
+        for (int k = 0; k < c; k++) {
+            for (int leaf : occurrences[changed[k]]) {
+                for (int i = leaf; i >= 0 && mark[i] != epoch; i = parent[i]) {
+                    mark[i] = epoch;
+                    if (d == dirty.length)
+                        dirty = Arrays.copyOf(dirty, d * 2);
+                    dirty[d++] = i;
+                }
+            }
+        }
+        Arrays.sort(dirty, 0, d);
+        if (saved.length < d)
+            saved = new double[dirty.length];
+
+        double[] before = new double[c];
+        for (int k = 0; k < c; k++) {
+            before[k] = inputs[changed[k]];
+            inputs[changed[k]] = next[k];
+        }
+        int done = 0;
+        try {
+            for (; done < d; done++) {
+                int i = dirty[done];
+                saved[done] = values[i];
+                values[i] = compute(i);
+            }
+        } catch (ArithmeticException ex) {
+            for (int k = 0; k < done; k++)
+                values[dirty[k]] = saved[k];
+            for (int k = 0; k < c; k++)
+                inputs[changed[k]] = before[k];
+            throw ex;
+        }
+        recomputed = d;
+        return result();
+    }
+
+    /** Value of the whole tree. */
+    public double result() {
+        return values[values.length - 1];
+    }
+
+    /** Nodes evaluated by the last update, or by the constructor. */
+    public int recomputed() {
+        return recomputed;
+    }
+
+    /** Number of nodes. */
+    public int size() {
+        return values.length;
+    }
+
+    /** Current variable values, in name order. */
+    public Map<String, Double> variables() {
+        Map<String, Double> vars = new LinkedHashMap<>();
+        for (int v = 0; v < names.length; v++)
+            vars.put(names[v], inputs[v]);
+        return vars;
+    }
+
+    private double compute(int i) {
+        int op = tree.opcode(i);
+        if (op == CompiledExpression.CONST)
+            return tree.constant(operand[i]);
+        if (op == CompiledExpression.LOAD)
+            return inputs[operand[i]];
+        double a = values[operand[i]], b = values[i - 1];
+        return switch (op) {
+            case CompiledExpression.ADD -> a + b;
+            case CompiledExpression.SUB -> a - b;
+            case CompiledExpression.MUL -> a * b;
+            case CompiledExpression.DIV -> CompiledExpression.divide(a, b);
+            case CompiledExpression.POW -> Math.pow(a, b);
+            default -> throw new IllegalStateException("Bad opcode: " + op);
+        };
+    }
+}
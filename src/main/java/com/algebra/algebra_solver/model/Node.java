@@ -1,17 +1,165 @@
 package com.algebra.algebra_solver.model;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
+/**
+ * Expression tree node. The whole-tree walks below use explicit stacks rather
+ * than recursion, so trees millions of levels deep (e.g. a long generated
+ * sum, which parses left-deep) neither overflow the thread stack nor take
+ * more than linear time.
+ */
 public abstract class Node {
     /** Evaluate the subtree given variable assignments. */
-    public abstract double evaluate(Map<String, Double> vars);
+    public double evaluate(Map<String, Double> vars) {
+        if (this instanceof OperandNode o)
+            return o.valueIn(vars);
+        // as fold(), on primitive doubles; operators are pushed twice: to expand their operands, then to apply
+        Node[] stack = new Node[16];
+        boolean[] expanded = new boolean[16];
+        double[] values = new double[16];
+        int top = 0, vTop = 0;
+        stack[top++] = this;
+        while (top > 0) {
+            Node n = stack[--top];
+            if (n instanceof OperandNode o) {
+                if (vTop == values.length)
+                    values = Arrays.copyOf(values, vTop * 2);
+                values[vTop++] = o.valueIn(vars);
+            } else if (expanded[top]) {
+                OperatorNode op = (OperatorNode) n;
+                double b = values[--vTop];
+                values[vTop - 1] = op.apply(values[vTop - 1], b);
+            } else {
+                OperatorNode op = (OperatorNode) n;
+                if (top + 3 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                    expanded = Arrays.copyOf(expanded, stack.length);
+                }
+                expanded[top] = true;
+                stack[top++] = op;
+                expanded[top] = false;
+                stack[top++] = op.getRight();
+                expanded[top] = false;
+                stack[top++] = op.getLeft(); // left is evaluated first
+            }
+        }
+        return values[0];
+    }
+
+    /** Combines an operator with the results already computed for its operands. */
+    @FunctionalInterface
+    public interface Combiner<T> {
+        T apply(OperatorNode op, T left, T right);
+    }
+
+    /**
+     * Fold the tree bottom-up without recursion: {@code operand} maps each
+     * leaf and {@code operator} combines each operator with its operands'
+     * results. Calls happen in the order of a recursive post-order walk, left
+     * operand first, so errors surface exactly as they would there.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T fold(Function<OperandNode, ? extends T> operand, Combiner<T> operator) {
+        Node[] stack = new Node[16];
+        boolean[] expanded = new boolean[16];
+        Object[] values = new Object[16];
+        int top = 0, vTop = 0;
+        stack[top++] = this;
+        while (top > 0) {
+            Node n = stack[--top];
+            if (n instanceof OperandNode o) {
+                if (vTop == values.length)
+                    values = Arrays.copyOf(values, vTop * 2);
+                values[vTop++] = operand.apply(o);
+            } else if (expanded[top]) {
+                T b = (T) values[--vTop];
+                values[vTop - 1] = operator.apply((OperatorNode) n, (T) values[vTop - 1], b);
+                values[vTop] = null;
+            } else {
+                OperatorNode op = (OperatorNode) n;
+                if (top + 3 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                    expanded = Arrays.copyOf(expanded, stack.length);
+                }
+                expanded[top] = true;
+                stack[top++] = op;
+                expanded[top] = false;
+                stack[top++] = op.getRight();
+                expanded[top] = false;
+                stack[top++] = op.getLeft();
+            }
+        }
+        return (T) values[0];
+    }
 
     /** Produce a readable infix string (with minimal parentheses). */
-    public abstract String toInfix();
+    public String toInfix() {
+        StringBuilder sb = new StringBuilder();
+        appendInfix(sb);
+        return sb.toString();
+    }
+
+    /** Append {@link #toInfix()} to {@code sb}, in time linear in the output. */
+    public void appendInfix(StringBuilder sb) {
+        // pending output, last item first: nodes still to render and literal text
+        Object[] stack = new Object[16];
+        int top = 0;
+        stack[top++] = this;
+        while (top > 0) {
+            Object item = stack[--top];
+            if (item instanceof String text) {
+                sb.append(text);
+            } else if (item instanceof OperandNode o) {
+                o.appendTo(sb);
+            } else {
+                OperatorNode op = (OperatorNode) item;
+                if (top + 7 > stack.length)
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                boolean parenRight = op.needsParens(op.getRight(), false);
+                boolean parenLeft = op.needsParens(op.getLeft(), true);
+                if (parenRight)
+                    stack[top++] = ")";
+                stack[top++] = op.getRight();
+                if (parenRight)
+                    stack[top++] = "(";
+                stack[top++] = op.spacedOp();
+                if (parenLeft)
+                    stack[top++] = ")";
+                stack[top++] = op.getLeft();
+                if (parenLeft)
+                    stack[top++] = "(";
+            }
+        }
+    }
+
+    /** Collect variable names used in this subtree, in left-to-right order. */
+    public void collectVariables(Set<String> acc) {
+        Node[] stack = new Node[16];
+        int top = 0;
+        stack[top++] = this;
+        while (top > 0) {
+            Node n = stack[--top];
+            if (n instanceof OperandNode o) {
+                if (!o.isNumber())
+                    acc.add(o.getToken());
+            } else {
+                OperatorNode op = (OperatorNode) n;
+                if (top + 2 > stack.length)
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = op.getRight();
+                stack[top++] = op.getLeft();
+            }
+        }
+    }
 
-    /** Collect variable names used in this subtree. */
-    public abstract void collectVariables(Set<String> acc);
+    /**
+     * Hash of the subtree's structure (operators and tokens), stable across
+     * runs. Equality stays identity; see {@code NodeInterner}.
+     */
+    public abstract int structuralHash();
 
     /** Precedence used to decide where parentheses are needed. */
     public int precedence() {
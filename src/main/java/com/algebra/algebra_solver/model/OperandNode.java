@@ -1,49 +1,68 @@
 package com.algebra.algebra_solver.model;
 
 import java.util.Map;
-import java.util.Set;
 
 public class OperandNode extends Node {
     private final String token; // either number like "3.5" or variable name like "x"
+    private final boolean number;
+    private final double value; // parsed once when token is a number
 
     public OperandNode(String token) {
         this.token = token;
+        this.number = isNumeric(token);
+        this.value = number ? Double.parseDouble(token) : Double.NaN;
+    }
+
+    // same as token.matches("-?\\d+(\\.\\d+)?") without compiling a pattern per call
+    private static boolean isNumeric(String t) {
+        int i = t.startsWith("-") ? 1 : 0, n = t.length();
+        int start = i;
+        while (i < n && t.charAt(i) >= '0' && t.charAt(i) <= '9')
+            i++;
+        if (i == start)
+            return false;
+        if (i == n)
+            return true;
+        if (t.charAt(i) != '.')
+            return false;
+        int frac = ++i;
+        while (i < n && t.charAt(i) >= '0' && t.charAt(i) <= '9')
+            i++;
+        return i > frac && i == n;
     }
 
     public boolean isNumber() {
-        return token.matches("-?\\d+(\\.\\d+)?");
+        return number;
     }
 
     public String getToken() {
         return token;
     }
 
+    /** Numeric value of a number token ({@code NaN} for variables). */
+    public double getValue() {
+        return value;
+    }
+
     @Override
-    public double evaluate(Map<String, Double> vars) {
-        if (isNumber())
-            return Double.parseDouble(token);
+    public int structuralHash() {
+        return token.hashCode();
+    }
+
+    double valueIn(Map<String, Double> vars) {
+        if (number)
+            return value;
         Double v = vars.get(token);
         if (v == null)
             throw new IllegalArgumentException("Missing variable value for '" + token + "'");
         return v;
     }
 
-    @Override
-    public String toInfix() {
-        if (isNumber()) {
-            double d = Double.parseDouble(token);
-            if (d == Math.rint(d))
-                return String.valueOf((long) d); // print integer without .0
-            return token;
-        } else {
-            return token;
-        }
-    }
-
-    @Override
-    public void collectVariables(Set<String> acc) {
-        if (!isNumber())
-            acc.add(token);
+    void appendTo(StringBuilder sb) {
+        if (number && value == Math.rint(value))
+            sb.append((long) value); // print integer without .0
+        else
+            sb.append(token);
     }
 
     @Override
@@ -1,16 +1,15 @@
 package com.algebra.algebra_solver.model;
 
-import java.util.Map;
-import java.util.Set;
-
 public class OperatorNode extends Node {
     private final String op;
     private final Node left, right;
+    private final int hash; // structural hash, computed once from the children's
 
     public OperatorNode(String op, Node left, Node right) {
         this.op = op;
         this.left = left;
         this.right = right;
+        this.hash = (31 * op.hashCode() + left.structuralHash()) * 31 + right.structuralHash();
     }
 
     public String getOp() {
@@ -26,9 +25,12 @@ public class OperatorNode extends Node {
     }
 
     @Override
-    public double evaluate(Map<String, Double> vars) {
-        double a = left.evaluate(vars);
-        double b = right.evaluate(vars);
+    public int structuralHash() {
+        return hash;
+    }
+
+    /** Apply this operator to already evaluated operands. */
+    public double apply(double a, double b) {
         return switch (op) {
             case "+" -> a + b;
             case "-" -> a - b;
@@ -56,32 +58,23 @@ public class OperatorNode extends Node {
         return "^".equals(o);
     }
 
-    @Override
-    public String toInfix() {
-        String L = left.toInfix();
-        String R = right.toInfix();
-
-        if (left instanceof OperatorNode) {
-            OperatorNode lo = (OperatorNode) left;
-            if (precedenceOf(lo.op) < precedenceOf(this.op))
-                L = "(" + L + ")";
-        }
-
-        if (right instanceof OperatorNode) {
-            OperatorNode ro = (OperatorNode) right;
-            if (precedenceOf(ro.op) < precedenceOf(this.op) ||
-                    (precedenceOf(ro.op) == precedenceOf(this.op) && !rightAssociative(this.op))) {
-                R = "(" + R + ")";
-            }
-        }
-
-        return L + " " + op + " " + R;
+    // whether an operand is rendered in parentheses below this operator
+    boolean needsParens(Node child, boolean isLeft) {
+        if (!(child instanceof OperatorNode c))
+            return false;
+        int p = precedenceOf(c.op), q = precedenceOf(op);
+        return p < q || (!isLeft && p == q && !rightAssociative(op));
     }
 
-    @Override
-    public void collectVariables(Set<String> acc) {
-        left.collectVariables(acc);
-        right.collectVariables(acc);
+    String spacedOp() {
+        return switch (op) {
+            case "+" -> " + ";
+            case "-" -> " - ";
+            case "*" -> " * ";
+            case "/" -> " / ";
+            case "^" -> " ^ ";
+            default -> " " + op + " ";
+        };
     }
 
     @Override
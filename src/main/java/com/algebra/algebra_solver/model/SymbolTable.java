@@ -0,0 +1,79 @@
+package com.algebra.algebra_solver.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide interning of variable names (and the rare number token that
+ * does not round-trip through its value) to dense int ids. Every stored
+ * equation refers to a name by id, so each distinct name is held once however
+ * many equations use it. Ids are never reused, so entries outlive the
+ * equations that added them; instead the table is capped, and a name that
+ * would take it past {@link #limit()} is rejected while known names keep
+ * resolving.
+ */
+public final class SymbolTable {
+    public static final int DEFAULT_LIMIT = 1 << 16;
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int count; // guarded by IDS' monitor when adding
+    private static volatile int limit = DEFAULT_LIMIT;
+
+    private SymbolTable() {
+    }
+
+    /**
+     * Id of {@code name}, assigned on first use.
+     *
+     * @throws IllegalArgumentException if {@code name} is new and the table is full
+     */
+    public static int id(String name) {
+        Integer id = IDS.get(name);
+        return id != null ? id : add(name);
+    }
+
+    /** The shared instance of the name with this id. */
+    public static String name(int id) {
+        return names[id];
+    }
+
+    /** The shared instance equal to {@code name}. */
+    public static String intern(String name) {
+        return name(id(name));
+    }
+
+    public static int size() {
+        return IDS.size();
+    }
+
+    public static int limit() {
+        return limit;
+    }
+
+    /** Sets the most names the table will hold; returns the previous limit. */
+    public static int limit(int max) {
+        if (max < 1)
+            throw new IllegalArgumentException("Symbol table limit must be positive");
+        int previous = limit;
+        limit = max;
+        return previous;
+    }
+
+    private static int add(String name) {
+        synchronized (IDS) {
+            Integer id = IDS.get(name);
+            if (id != null)
+                return id;
+            if (count >= limit)
+                throw new IllegalArgumentException("Too many distinct names: the symbol table holds at most " + limit);
+            if (count == names.length)
+                names = Arrays.copyOf(names, count * 2);
+            names[count] = name;
+            // published through the map after the name is in place
+            IDS.put(name, count);
+            return count++;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.algebra.algebra_solver.persistence;
+
+import com.algebra.algebra_solver.model.CompactTree;
+import com.algebra.algebra_solver.model.Equation;
+import com.algebra.algebra_solver.model.Node;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, memory-mapped log of store and delete records with periodic
+ * compacted snapshots.
+ * <p>
+ * Records are appended to fixed-size segment files ({@code segment-N.log}).
+ * A background flusher forces the mapped segment and releases every writer
+ * waiting on it at once (group commit). A snapshot rolls to a fresh segment,
+ * writes all live equations to {@code snapshot-N.snap} and deletes the
+ * segments it covers, so recovery reads the newest snapshot and replays only
+ * the segments from N onwards.
+ * <p>
+ * Record layout: {@code byte type, long id, int length, byte[length] payload,
+ * int crc32c}. A zero type byte marks the end of a segment; a bad checksum
+ * (torn write) ends replay of that segment.
+ */
+public class EquationLog implements Closeable {
+    static final byte STORE = 1;
+    static final byte DELETE = 2;
+    private static final int RECORD_OVERHEAD = 1 + 8 + 4 + 4;
+    private static final int SNAPSHOT_MAGIC = 0x45514E53;
+
+    /** Receives recovered equations; may be called from several threads. */
+    @FunctionalInterface
+    public interface Restorer {
+        void restore(long id, String infix, Node root);
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long groupCommitMillis;
+    private final long snapshotIntervalMillis;
+    private final boolean sync;
+
+    private final Object snapshotLock = new Object();
+    private MappedByteBuffer segment; // guarded by this
+    private long segmentIndex; // guarded by this
+    private long appended; // records appended, guarded by this
+    private long durable; // records known to be on disk, guarded by this
+    private long sinceSnapshot; // guarded by this
+    private boolean closed; // guarded by this
+
+    private Supplier<? extends Iterable<Equation>> live;
+    private LongSupplier lastId;
+    private Thread flusher;
+    private ScheduledExecutorService snapshots;
+
+    /**
+     * @param sync when true, {@link #commit} returns only after the records
+     *             it covers have been forced to disk
+     */
+    public EquationLog(Path dir, int segmentBytes, long groupCommitMillis, long snapshotIntervalMillis, boolean sync) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.groupCommitMillis = groupCommitMillis;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        this.sync = sync;
+    }
+
+    /**
+     * Replay the newest snapshot and the segments after it. Surviving
+     * equations are decoded in parallel and passed to {@code restorer}.
+     *
+     * @return the highest equation id ever issued, or 0 for an empty log
+     */
+    public long recover(Restorer restorer) {
+        try {
+            Files.createDirectories(dir);
+            long snapshotIndex = 0;
+            long maxId = 0;
+            Map<Long, ByteBuffer> survivors = new HashMap<>();
+
+            List<Long> snaps = indexes("snapshot-", ".snap");
+            if (!snaps.isEmpty()) {
+                snapshotIndex = snaps.get(snaps.size() - 1);
+                ByteBuffer buf = mapReadOnly(snapshotPath(snapshotIndex));
+                if (buf.getInt() != SNAPSHOT_MAGIC)
+                    throw new IOException("Not a snapshot: " + snapshotPath(snapshotIndex));
+                maxId = buf.getLong();
+                maxId = Math.max(maxId, replay(buf, survivors));
+            }
+            long lastSegment = snapshotIndex;
+            for (long index : indexes("segment-", ".log")) {
+                if (index < snapshotIndex)
+                    continue;
+                maxId = Math.max(maxId, replay(mapReadOnly(segmentPath(index)), survivors));
+                lastSegment = Math.max(lastSegment, index);
+            }
+
+            survivors.entrySet().parallelStream()
+                    .forEach(e -> TreeCodec.decode(e.getKey(), e.getValue(), restorer));
+
+            synchronized (this) {
+                // never append behind a possibly torn tail: start a fresh segment
+                segmentIndex = lastSegment;
+                roll(0);
+            }
+            return maxId;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Equation log recovery failed in " + dir, ex);
+        }
+    }
+
+    /**
+     * Start the group-commit flusher and the snapshot schedule. {@code live}
+     * supplies the current equations and {@code lastId} the id counter to
+     * record in each snapshot.
+     */
+    public void start(Supplier<? extends Iterable<Equation>> live, LongSupplier lastId) {
+        this.live = live;
+        this.lastId = lastId;
+        flusher = new Thread(this::flushLoop, "equation-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        if (snapshotIntervalMillis > 0) {
+            snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "equation-log-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            snapshots.scheduleWithFixedDelay(this::scheduledSnapshot, snapshotIntervalMillis,
+                    snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Append records without waiting for them to reach disk; the returned
+     * ticket is passed to {@link #commit}. Two records for the same id are
+     * replayed in the order they were appended.
+     */
+    public long appendStore(long id, String infix, CompactTree tree) {
+        return append(STORE, id, TreeCodec.encode(infix, tree));
+    }
+
+    /** Append a batch of already-stored equations, committed under the last record's ticket. */
+    public long appendStores(List<Equation> equations) {
+        long ticket = 0;
+        for (Equation e : equations)
+            ticket = append(STORE, e.getId(), TreeCodec.encode(e.getInfix(), e.getTree()));
+        return ticket;
+    }
+
+    public long appendDelete(long id) {
+        return append(DELETE, id, new byte[0]);
+    }
+
+    /** In sync mode, wait until every record up to {@code ticket} is on disk. */
+    public void commit(long ticket) {
+        if (sync && ticket > 0)
+            awaitDurable(ticket);
+    }
+
+    /** Write a compacted snapshot of the live equations and drop covered segments. */
+    public void snapshot() {
+        synchronized (snapshotLock) {
+            try {
+                long index, seq;
+                synchronized (this) {
+                    if (closed)
+                        return;
+                    roll(0);
+                    index = segmentIndex;
+                    sinceSnapshot = 0;
+                    seq = lastId.getAsLong();
+                }
+                // Everything appended before the roll is already reflected in the live
+                // map; later records land in segment >= index and are replayed on top.
+                Path tmp = dir.resolve("snapshot-" + index + ".tmp");
+                try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+                        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                    out.writeInt(SNAPSHOT_MAGIC);
+                    out.writeLong(seq);
+                    for (Equation e : live.get())
+                        out.write(record(STORE, e.getId(),
+                                TreeCodec.encode(e.getInfix(), e.getTree())).array());
+                    out.writeByte(0);
+                    out.flush();
+                    file.getFD().sync();
+                }
+                Files.move(tmp, snapshotPath(index), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                for (long old : indexes("segment-", ".log"))
+                    if (old < index)
+                        Files.deleteIfExists(segmentPath(old));
+                for (long old : indexes("snapshot-", ".snap"))
+                    if (old < index)
+                        Files.deleteIfExists(snapshotPath(old));
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Equation log snapshot failed in " + dir, ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (snapshots != null)
+            snapshots.shutdownNow();
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            if (segment != null)
+                segment.force();
+            durable = appended;
+            notifyAll();
+        }
+    }
+
+    private synchronized long append(byte type, long id, byte[] payload) {
+        if (closed)
+            throw new IllegalStateException("Equation log is closed");
+        ByteBuffer rec = record(type, id, payload);
+        // keep one byte free for the end-of-segment marker
+        if (segment.remaining() < rec.capacity() + 1) {
+            try {
+                roll(rec.capacity() + 1);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Equation log roll failed in " + dir, ex);
+            }
+        }
+        segment.put(rec);
+        sinceSnapshot++;
+        appended++;
+        notifyAll();
+        return appended;
+    }
+
+    private synchronized void awaitDurable(long ticket) {
+        try {
+            while (durable < ticket && !closed)
+                wait();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for equation log commit", ex);
+        }
+    }
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (durable == appended && !closed)
+                        wait();
+                    if (closed)
+                        return;
+                }
+                // let concurrent writers join this commit
+                if (groupCommitMillis > 0)
+                    Thread.sleep(groupCommitMillis);
+                MappedByteBuffer target;
+                long upTo;
+                synchronized (this) {
+                    target = segment;
+                    upTo = appended;
+                }
+                target.force();
+                synchronized (this) {
+                    if (upTo > durable)
+                        durable = upTo;
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void scheduledSnapshot() {
+        synchronized (this) {
+            if (sinceSnapshot == 0)
+                return;
+        }
+        snapshot();
+    }
+
+    // caller holds the monitor; previous segment is forced before switching
+    private void roll(int minBytes) throws IOException {
+        if (segment != null) {
+            segment.force();
+            durable = appended;
+            notifyAll();
+        }
+        segmentIndex++;
+        try (FileChannel ch = FileChannel.open(segmentPath(segmentIndex), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = ch.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, minBytes));
+        }
+    }
+
+    private static ByteBuffer record(byte type, long id, byte[] payload) {
+        ByteBuffer rec = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+        rec.put(type).putLong(id).putInt(payload.length).put(payload);
+        CRC32C crc = new CRC32C();
+        crc.update(rec.array(), 0, rec.position());
+        rec.putInt((int) crc.getValue());
+        return rec.flip();
+    }
+
+    // apply records until the end marker or the first damaged record
+    private static long replay(ByteBuffer buf, Map<Long, ByteBuffer> survivors) {
+        long maxId = 0;
+        CRC32C crc = new CRC32C();
+        while (buf.remaining() >= RECORD_OVERHEAD) {
+            int start = buf.position();
+            byte type = buf.get();
+            if (type != STORE && type != DELETE)
+                break;
+            long id = buf.getLong();
+            int length = buf.getInt();
+            if (length < 0 || buf.remaining() < length + 4)
+                break;
+            ByteBuffer payload = buf.slice(buf.position(), length);
+            buf.position(buf.position() + length);
+            crc.reset();
+            crc.update(buf.duplicate().position(start).limit(buf.position()));
+            if (buf.getInt() != (int) crc.getValue())
+                break;
+            maxId = Math.max(maxId, id);
+            if (type == STORE)
+                survivors.put(id, payload);
+            else
+                survivors.remove(id);
+        }
+        return maxId;
+    }
+
+    private static ByteBuffer mapReadOnly(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    private List<Long> indexes(String prefix, String suffix) throws IOException {
+        List<Long> out = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*" + suffix)) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                try {
+                    out.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException ignored) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    private Path segmentPath(long index) {
+        return dir.resolve("segment-" + index + ".log");
+    }
+
+    private Path snapshotPath(long index) {
+        return dir.resolve("snapshot-" + index + ".snap");
+    }
+}
@@ -0,0 +1,26 @@
+package com.algebra.algebra_solver.persistence;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/** Creates the durable equation log when {@code equations.persistence.enabled=true}. */
+@Configuration
+public class PersistenceConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "equations.persistence.enabled", havingValue = "true")
+    public EquationLog equationLog(
+            @Value("${equations.persistence.directory:data}") String directory,
+            @Value("${equations.persistence.segment-size:64MB}") DataSize segmentSize,
+            @Value("${equations.persistence.group-commit-millis:2}") long groupCommitMillis,
+            @Value("${equations.persistence.snapshot-interval-millis:300000}") long snapshotIntervalMillis,
+            @Value("${equations.persistence.sync:true}") boolean sync) {
+        return new EquationLog(Path.of(directory), (int) segmentSize.toBytes(), groupCommitMillis,
+                snapshotIntervalMillis, sync);
+    }
+}
@@ -0,0 +1,91 @@
+package com.algebra.algebra_solver.persistence;
+
+import com.algebra.algebra_solver.model.CompactTree;
+import com.algebra.algebra_solver.model.CompiledExpression;
+import com.algebra.algebra_solver.model.Node;
+import com.algebra.algebra_solver.model.OperandNode;
+import com.algebra.algebra_solver.model.OperatorNode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary form of a stored equation: the rendered infix followed by the tree
+ * in postfix order. Decoding rebuilds the tree on a stack, so recovery never
+ * has to run the parser.
+ *
+ * <pre>
+ * int infixLength, byte[] infix (UTF-8), int nodeCount,
+ * nodeCount x (byte tag, [int tokenLength, byte[] token] when tag == OPERAND)
+ * </pre>
+ */
+final class TreeCodec {
+    private static final byte OPERAND = 0;
+    private static final String OPS = "+-*/^"; // tag i + 1 is OPS.charAt(i)
+
+    private TreeCodec() {
+    }
+
+    // straight from the postfix arrays; operator tags follow OPS
+    static byte[] encode(String infix, CompactTree tree) {
+        byte[] text = infix.getBytes(StandardCharsets.UTF_8);
+        int n = tree.size();
+        byte[][] tokens = new byte[n][];
+        int size = 4 + text.length + 4;
+        for (int i = 0; i < n; i++) {
+            size++;
+            int op = tree.opcode(i);
+            if (op == CompiledExpression.CONST || op == CompiledExpression.LOAD) {
+                tokens[i] = tree.operand(i).getBytes(StandardCharsets.UTF_8);
+                size += 4 + tokens[i].length;
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(text.length).put(text).putInt(n);
+        for (int i = 0; i < n; i++) {
+            if (tokens[i] != null)
+                buf.put(OPERAND).putInt(tokens[i].length).put(tokens[i]);
+            else
+                buf.put(tag(tree.opcode(i)));
+        }
+        return buf.array();
+    }
+
+    private static byte tag(int opcode) {
+        return switch (opcode) {
+            case CompiledExpression.ADD -> 1;
+            case CompiledExpression.SUB -> 2;
+            case CompiledExpression.MUL -> 3;
+            case CompiledExpression.DIV -> 4;
+            case CompiledExpression.POW -> 5;
+            default -> throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        };
+    }
+
+    /** Decode a payload written by {@link #encode} and hand it to the restorer. */
+    static void decode(long id, ByteBuffer payload, EquationLog.Restorer restorer) {
+        ByteBuffer buf = payload.duplicate();
+        String infix = readString(buf, buf.getInt());
+        int count = buf.getInt();
+        Node[] stack = new Node[Math.max(1, count)];
+        int top = 0;
+        for (int i = 0; i < count; i++) {
+            byte tag = buf.get();
+            if (tag == OPERAND) {
+                stack[top++] = new OperandNode(readString(buf, buf.getInt()));
+            } else {
+                Node r = stack[--top], l = stack[--top];
+                stack[top++] = new OperatorNode(String.valueOf(OPS.charAt(tag - 1)), l, r);
+            }
+        }
+        if (top != 1)
+            throw new IllegalStateException("Corrupt equation record " + id);
+        restorer.restore(id, infix, stack[0]);
+    }
+
+    private static String readString(ByteBuffer buf, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -4,27 +4,125 @@ import com.algebra.algebra_solver.model.Equation;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface EquationService {
     Equation store(String infix);
 
-    Equation get(String id);
+    /** Store many equations; one result per input, in input order, failures do not stop the rest. */
+    List<BulkResult> storeAll(List<String> infixes);
+
+    Equation get(long id);
+
+    /** The stored text of {@code id}, without building the rest of the equation. */
+    String infixOf(long id);
+
+    /** Id of an earlier stored equation with the same structure as {@code id}, or 0. */
+    long duplicateOf(long id);
 
     List<Equation> list();
 
-    double evaluate(String id, Map<String, Double> vars);
+    /** Up to {@code limit} equations in id order, starting after the cursor id (0 = first page). */
+    List<Equation> page(long after, int limit);
+
+    /** Lazily iterate equations in id order after the cursor id; never copies the store. */
+    Iterable<Equation> iterate(long after);
+
+    double evaluate(long id, Map<String, Double> vars);
+
+    /** Evaluate one equation over equal-length value columns keyed by variable. */
+    double[] evaluateBatch(long id, Map<String, double[]> columns);
 
-    SolveResult solve(String id, String variable, Map<String, Double> knowns);
+    /** Value and partial derivatives with respect to every variable, in one forward-mode pass. */
+    GradientResult gradient(long id, Map<String, Double> vars);
+
+    /** As {@link #solve(String, String, Map, SolveOptions)} with {@link SolveOptions#exact()}. */
+    SolveResult solve(long id, String variable, Map<String, Double> knowns);
+
+    SolveResult solve(long id, String variable, Map<String, Double> knowns, SolveOptions options);
+
+    /**
+     * Prepare a solve for {@code variable} at every point of the Cartesian
+     * grid of {@code axes} (values per known, the last axis varying fastest).
+     * Errors that apply to the whole grid are thrown here, before any point
+     * is solved.
+     */
+    Sweep sweep(long id, String variable, Map<String, double[]> axes);
 
     //  new
-    void delete(String id);
+    void delete(long id);
+
+    SolveCache.Stats solveCacheStats();
+
+    interface Sweep {
+        long points();
+
+        /** Solve every point in parallel; blocks reach {@code sink} on the calling thread, in grid order. */
+        void forEach(Consumer<SweepBlock> sink);
+    }
+
+    /** Results for points {@code first .. first + solutions.length - 1} of a sweep. */
+    class SweepBlock {
+        public long first;
+        public double[][] solutions; // real roots per point, null where the point failed
+        public String[] errors; // per point, null where it was solved
+    }
+
+    class GradientResult {
+        public double value;
+        public Map<String, Double> gradient; // partial derivative per variable, in variable order
+    }
+
+    class BulkResult {
+        public int index;
+        public long equationId; // 0 when the equation failed
+        public String error;
+
+        static BulkResult stored(int index, long equationId) {
+            BulkResult r = new BulkResult();
+            r.index = index;
+            r.equationId = equationId;
+            return r;
+        }
+
+        static BulkResult failed(int index, String error) {
+            BulkResult r = new BulkResult();
+            r.index = index;
+            r.error = error;
+            return r;
+        }
+    }
 
     class SolveResult {
-        public String equationId;
+        public static final String POLYNOMIAL = "polynomial", NUMERIC = "numeric";
+
+        public long equationId;
         public String equation;
         public String variable;
-        public int degree;
+        public String method = POLYNOMIAL;
+        public int degree; // -1 for numeric results
         public double a, b, c;
+        public double[] coefficients; // ascending, degree above 2 only
         public double[] solutions;
+        public double[][] complexSolutions; // {re, im} per non-real root; null for numeric results
+        public NumericSolver.Stats convergence; // numeric results only
+
+        /** Copy safe to hand out while the original stays cached. */
+        public SolveResult copy() {
+            SolveResult r = new SolveResult();
+            r.equationId = equationId;
+            r.equation = equation;
+            r.variable = variable;
+            r.method = method;
+            r.degree = degree;
+            r.a = a;
+            r.b = b;
+            r.c = c;
+            r.coefficients = coefficients == null ? null : coefficients.clone();
+            r.solutions = solutions == null ? null : solutions.clone();
+            r.complexSolutions = complexSolutions == null ? null : complexSolutions.clone();
+            r.convergence = convergence;
+            return r;
+        }
     }
 }
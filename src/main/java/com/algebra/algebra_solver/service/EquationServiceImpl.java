@@ -2,66 +2,453 @@ package com.algebra.algebra_solver.service;
 
 import com.algebra.algebra_solver.exception.EquationNotFoundException;
 import com.algebra.algebra_solver.exception.InvalidEquationException;
+import com.algebra.algebra_solver.exception.NonPolynomialException;
+import com.algebra.algebra_solver.model.CompactTree;
+import com.algebra.algebra_solver.model.CompiledExpression;
 import com.algebra.algebra_solver.model.Equation;
 import com.algebra.algebra_solver.model.Node;
+import com.algebra.algebra_solver.model.SymbolTable;
+import com.algebra.algebra_solver.persistence.EquationLog;
+import com.algebra.algebra_solver.util.BytecodeCompiler;
 import com.algebra.algebra_solver.util.EquationParser;
+import com.algebra.algebra_solver.util.ExpressionCompiler;
+import com.algebra.algebra_solver.util.ExpressionSimplifier;
+import com.algebra.algebra_solver.util.MultiPolynomial;
+import com.algebra.algebra_solver.util.NodeInterner;
+import com.algebra.algebra_solver.util.Polynomial;
+import com.algebra.algebra_solver.util.PolynomialRoots;
 import com.algebra.algebra_solver.util.PolynomialUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 @Service
+@ConditionalOnProperty(name = "equations.store.type", havingValue = "heap", matchIfMissing = true)
 public class EquationServiceImpl implements EquationService {
-    private final Map<String, Equation> store = new ConcurrentHashMap<>();
-    private final AtomicInteger seq = new AtomicInteger(0);
+    private final EquationStore equations;
+    private final IdAllocator ids = new IdAllocator();
+    // trees are hash-consed before they are encoded, so identical equations have equal compact trees
+
+    // batches at least this large are split into row chunks evaluated in parallel
+    static final int BATCH_PARALLEL_THRESHOLD = 8192;
+    static final int BATCH_CHUNK_ROWS = 2048;
+    // bulk stores get ids and log records in batches of this size
+    static final int BULK_BATCH = 1024;
+    public static final int DEFAULT_JIT_THRESHOLD = 1000;
+    // sweeps solve blocks of this many points per task, a few blocks per worker at a time
+    static final int SWEEP_BLOCK_POINTS = 4096;
+    static final long MAX_SWEEP_POINTS = 100_000_000L;
+
+    private final EquationLog log; // null when persistence is disabled
+    // stores hold the read side from insert to append and deletes the write side, so an id's
+    // DELETE record can never reach the log ahead of its STORE record
+    private final ReadWriteLock logOrder = new ReentrantReadWriteLock();
+    private final SolveCache solveCache;
+    private final NumericSolver numericSolver;
+    // evaluations after which a program is compiled to bytecode; 0 keeps everything interpreted
+    private final int jitThreshold;
+    private final Counter jitCompiled;
+
+    // per-phase latency; parsing and tree building are one pass in EquationParser
+    private final Timer parseTimer;
+    private final Timer compileTimer;
+    private final Timer renderTimer;
+    private final Timer polynomialTimer;
+    private final Timer rootsTimer;
+    private final Timer numericTimer;
+
+    public EquationServiceImpl() {
+        this(null);
+    }
+
+    public EquationServiceImpl(EquationLog log) {
+        this(log, new SolveCache(), new NumericSolver(), new SimpleMeterRegistry(), DEFAULT_JIT_THRESHOLD);
+    }
+
+    @Autowired
+    public EquationServiceImpl(@Nullable EquationLog log, SolveCache solveCache, NumericSolver numericSolver,
+            MeterRegistry registry,
+            @Value("${equations.jit.threshold:" + DEFAULT_JIT_THRESHOLD + "}") int jitThreshold) {
+        this(new HeapEquationStore(), log, solveCache, numericSolver, registry, jitThreshold);
+    }
+
+    protected EquationServiceImpl(EquationStore equations, @Nullable EquationLog log, SolveCache solveCache,
+            NumericSolver numericSolver, MeterRegistry registry, int jitThreshold) {
+        this.equations = equations;
+        this.log = log;
+        this.solveCache = solveCache;
+        this.numericSolver = numericSolver;
+        this.jitThreshold = jitThreshold;
+        this.jitCompiled = Counter.builder("equations.jit.compiled")
+                .description("Programs compiled to bytecode after passing the evaluation threshold")
+                .register(registry);
+        this.parseTimer = phaseTimer(registry, "parse");
+        this.compileTimer = phaseTimer(registry, "compile");
+        this.renderTimer = phaseTimer(registry, "render");
+        this.polynomialTimer = phaseTimer(registry, "polynomial");
+        this.rootsTimer = phaseTimer(registry, "roots");
+        this.numericTimer = phaseTimer(registry, "numeric");
+        registry.gauge("equations.store.size", equations, EquationStore::size);
+        registry.gauge("equations.store.bytes.per.equation", equations, EquationStore::bytesPerEquation);
+        FunctionCounter.builder("equations.solve.cache", solveCache, c -> c.stats().hits)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("equations.solve.cache", solveCache, c -> c.stats().misses)
+                .tag("result", "miss").register(registry);
+        if (log != null) {
+            ids.resume(log.recover((id, infix, root) -> insert(id, compile(infix, root))));
+            log.start(() -> equations.after(0), ids::lastIssued);
+        }
+    }
+
+    private static Timer phaseTimer(MeterRegistry registry, String phase) {
+        return Timer.builder("equations.phase")
+                .description("Time spent in one phase of storing or solving an equation")
+                .tag("phase", phase)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
 
     @Override
     public Equation store(String infix) {
-        Node root = EquationParser.parseToTree(infix);
-        Set<String> vars = new TreeSet<>();
-        root.collectVariables(vars);
-        String id = String.valueOf(seq.incrementAndGet());
-        Equation e = new Equation(id, root.toInfix(), root, vars);
-        store.put(id, e);
+        Equation e = prepare(infix);
+        if (log == null) {
+            insert(ids.next(), e);
+            return e;
+        }
+        long ticket;
+        logOrder.readLock().lock();
+        try {
+            insert(ids.next(), e);
+            // logged after it is visible so a concurrent snapshot never misses it
+            ticket = log.appendStore(e.getId(), e.getInfix(), e.getTree());
+        } finally {
+            logOrder.readLock().unlock();
+        }
+        log.commit(ticket);
         return e;
     }
 
     @Override
-    public Equation get(String id) {
-        Equation e = store.get(id);
+    public List<BulkResult> storeAll(List<String> infixes) {
+        int n = infixes.size();
+        Equation[] prepared = new Equation[n];
+        RuntimeException[] failed = new RuntimeException[n];
+        // parsing and compiling touch no shared state, so they run on the fork-join pool
+        IntStream.range(0, n).parallel().forEach(i -> {
+            try {
+                prepared[i] = prepare(infixes.get(i));
+            } catch (RuntimeException ex) {
+                failed[i] = ex;
+            }
+        });
+
+        List<BulkResult> results = new ArrayList<>(n);
+        List<Equation> batch = new ArrayList<>(BULK_BATCH);
+        for (int from = 0; from < n; from += BULK_BATCH) {
+            int to = Math.min(n, from + BULK_BATCH);
+            batch.clear();
+            for (int i = from; i < to; i++)
+                if (prepared[i] != null)
+                    batch.add(prepared[i]);
+            if (!batch.isEmpty())
+                insertBatch(batch);
+            for (int i = from; i < to; i++)
+                results.add(prepared[i] != null ? BulkResult.stored(i, prepared[i].getId())
+                        : BulkResult.failed(i, describe(failed[i])));
+        }
+        return results;
+    }
+
+    private void insertBatch(List<Equation> batch) {
+        if (log == null) {
+            long first = ids.range(batch.size());
+            for (int k = 0; k < batch.size(); k++)
+                insert(first + k, batch.get(k));
+            return;
+        }
+        long ticket;
+        logOrder.readLock().lock();
+        try {
+            long first = ids.range(batch.size());
+            for (int k = 0; k < batch.size(); k++)
+                insert(first + k, batch.get(k));
+            ticket = log.appendStores(batch);
+        } finally {
+            logOrder.readLock().unlock();
+        }
+        log.commit(ticket);
+    }
+
+    // same wording GlobalExceptionHandler uses for a single store
+    private static String describe(RuntimeException ex) {
+        if (ex instanceof InvalidEquationException)
+            return "Invalid equation: " + ex.getMessage();
+        if (ex instanceof IllegalArgumentException)
+            return "Invalid input: " + ex.getMessage();
+        return "Unexpected error: " + ex.getMessage();
+    }
+
+    // parse, render and compile; assigns no id and touches no shared state
+    private Equation prepare(String infix) {
+        Node root = parseTimer.record(() -> EquationParser.parseToTree(infix));
+        return compile(renderTimer.record(root::toInfix), root);
+    }
+
+    // The infix is rendered from the input tree before interning and simplifying,
+    // so it keeps what was written; evaluate and solve work on the simplified tree.
+    private Equation compile(String infix, Node parsed) {
+        return compileTimer.record(() -> {
+            // a fresh interner per tree: only the compact form outlives this call
+            NodeInterner interner = new NodeInterner();
+            Node root = new ExpressionSimplifier(interner).simplify(interner.intern(parsed));
+            CompactTree tree = CompactTree.of(root);
+            Equation twin = equations.twin(tree);
+            if (twin != null) {
+                // identical structure: share the derived forms instead of building them again
+                Equation e = new Equation(0, infix, twin.getTree(), twin.getProgram());
+                e.setPolynomial(twin.getPolynomial());
+                return e;
+            }
+            // slots follow the text, not the canonical operand order; names are the symbol table's
+            Set<String> vars = new HashSet<>();
+            root.collectVariables(vars);
+            Set<String> order = new LinkedHashSet<>();
+            for (String v : EquationParser.variablesOf(infix))
+                if (vars.contains(v)) // simplification may have dropped some
+                    order.add(SymbolTable.intern(v));
+            CompiledExpression program = ExpressionCompiler.compile(root, order);
+            Equation e = new Equation(0, infix, tree, program);
+            e.setPolynomial(MultiPolynomial.expand(root, program.getSlots()));
+            return e;
+        });
+    }
+
+    private void insert(long id, Equation e) {
+        e.setId(id);
+        equations.put(e);
+    }
+
+    @Override
+    public Equation get(long id) {
+        Equation e = equations.get(id);
         if (e == null)
             throw new EquationNotFoundException("Equation id " + id + " not found");
         return e;
     }
 
+    @Override
+    public String infixOf(long id) {
+        String infix = equations.infix(id);
+        if (infix == null)
+            throw new EquationNotFoundException("Equation id " + id + " not found");
+        return infix;
+    }
+
     @Override
     public List<Equation> list() {
-        return new ArrayList<>(store.values());
+        List<Equation> out = new ArrayList<>(equations.size());
+        for (Equation e : equations.after(0))
+            out.add(e);
+        return out;
     }
 
     @Override
-    public double evaluate(String id, Map<String, Double> vars) {
+    public List<Equation> page(long after, int limit) {
+        if (limit <= 0)
+            throw new IllegalArgumentException("limit must be positive");
+        List<Equation> out = new ArrayList<>(Math.min(limit, 256));
+        for (Equation e : iterate(after)) {
+            out.add(e);
+            if (out.size() == limit)
+                break;
+        }
+        return out;
+    }
+
+    @Override
+    public Iterable<Equation> iterate(long after) {
+        return equations.after(after);
+    }
+
+    @Override
+    public double evaluate(long id, Map<String, Double> vars) {
         Equation e = get(id);
-        return e.getRoot().evaluate(vars == null ? Collections.emptyMap() : vars);
+        Map<String, Double> values = vars == null ? Collections.emptyMap() : vars;
+        CompiledExpression program = e.getProgram();
+        if (program == null)
+            return e.getRoot().evaluate(values);
+        if (jitThreshold > 0 && program.countEvaluations(1, jitThreshold))
+            tierUp(program);
+        return program.evaluate(values);
     }
 
     @Override
-    public SolveResult solve(String id, String variable, Map<String, Double> knowns) {
-        if (variable == null || variable.isBlank())
-            variable = "x";
+    public GradientResult gradient(long id, Map<String, Double> vars) {
         Equation e = get(id);
-        Map<Integer, Double> poly = PolynomialUtils.toPolynomial(e.getRoot(), variable,
-                knowns == null ? Collections.emptyMap() : knowns);
+        CompiledExpression program = e.getProgram();
+        String[] slots = program.getSlots();
+        double[] partials = new double[slots.length];
+        GradientResult res = new GradientResult();
+        res.value = program.gradient(vars == null ? Collections.emptyMap() : vars, partials);
+        res.gradient = new LinkedHashMap<>();
+        for (String v : e.getVariables())
+            res.gradient.put(v, 0.0);
+        for (int i = 0; i < slots.length; i++)
+            res.gradient.put(slots[i], partials[i]);
+        return res;
+    }
 
-        int deg = poly.keySet().stream().max(Integer::compareTo).orElse(0);
-        if (deg > 2)
-            throw new InvalidEquationException("Only linear/quadratic equations supported");
+    // Compiled on the request that crosses the threshold; programs over the size cap stay interpreted.
+    private void tierUp(CompiledExpression program) {
+        CompiledExpression.Kernel kernel = BytecodeCompiler.compile(program);
+        if (kernel != null) {
+            program.setKernel(kernel);
+            jitCompiled.increment();
+        }
+    }
+
+    @Override
+    public double[] evaluateBatch(long id, Map<String, double[]> columns) {
+        Equation e = get(id);
+        CompiledExpression program = e.getProgram();
+        Map<String, double[]> cols = columns == null ? Collections.emptyMap() : columns;
+
+        int rows = -1;
+        for (Map.Entry<String, double[]> c : cols.entrySet()) {
+            if (c.getValue() == null)
+                throw new IllegalArgumentException("Missing values for variable '" + c.getKey() + "'");
+            if (rows < 0)
+                rows = c.getValue().length;
+            else if (c.getValue().length != rows)
+                throw new IllegalArgumentException("All variable columns must have the same length");
+        }
+        String[] slots = program.getSlots();
+        double[][] bySlot = new double[slots.length][];
+        for (int i = 0; i < slots.length; i++) {
+            bySlot[i] = cols.get(slots[i]);
+            if (bySlot[i] == null)
+                throw new IllegalArgumentException("Missing variable value for '" + slots[i] + "'");
+        }
+        if (rows < 0)
+            rows = 1; // constant equation, no columns supplied
+
+        if (jitThreshold > 0 && program.countEvaluations(rows, jitThreshold))
+            tierUp(program);
+        double[] out = new double[rows];
+        if (rows < BATCH_PARALLEL_THRESHOLD) {
+            program.evaluateRows(bySlot, 0, rows, out);
+            return out;
+        }
+        int total = rows;
+        int chunks = (rows + BATCH_CHUNK_ROWS - 1) / BATCH_CHUNK_ROWS;
+        // report the lowest failing row, as the serial path does: chunks after a failed one are skipped,
+        // chunks before it still run
+        RuntimeException[] failures = new RuntimeException[chunks];
+        AtomicInteger firstFailed = new AtomicInteger(chunks);
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            if (c > firstFailed.get())
+                return;
+            try {
+                program.evaluateRows(bySlot, c * BATCH_CHUNK_ROWS, Math.min(total, (c + 1) * BATCH_CHUNK_ROWS), out);
+            } catch (RuntimeException ex) {
+                failures[c] = ex;
+                firstFailed.accumulateAndGet(c, Math::min);
+            }
+        });
+        if (firstFailed.get() < chunks)
+            throw failures[firstFailed.get()];
+        return out;
+    }
 
-        double a = poly.getOrDefault(2, 0.0);
-        double b = poly.getOrDefault(1, 0.0);
-        double c = poly.getOrDefault(0, 0.0);
+    @Override
+    public SolveResult solve(long id, String variable, Map<String, Double> knowns) {
+        return solve(id, variable, knowns, SolveOptions.exact());
+    }
+
+    @Override
+    public SolveResult solve(long id, String variable, Map<String, Double> knowns, SolveOptions options) {
+        String var = (variable == null || variable.isBlank()) ? "x" : variable;
+        Equation e = get(id);
+        Map<String, Double> known = knowns == null ? Collections.emptyMap() : knowns;
+        try {
+            SolveResult res = solveCache.get(e, var, known, () -> solveUncached(e, var, known));
+            // complex-only results are cached like any other; only the caller decides whether they are an error
+            if (!options.complexRoots() && onlyComplexRoots(res))
+                throw noRealRoots(res);
+            return res;
+        } catch (NonPolynomialException ex) {
+            if (!options.numericFallback())
+                throw ex;
+            // budget-bounded and not cached: only exact results go in the solve cache
+            return numericTimer.record(() -> solveNumeric(e, var, known));
+        }
+    }
+
+    private SolveResult solveNumeric(Equation e, String variable, Map<String, Double> knowns) {
+        CompiledExpression program = e.getProgram();
+        String[] slots = program.getSlots();
+        PolynomialUtils.requireKnowns(slots, variable, knowns);
+        double[] values = new double[slots.length];
+        int slot = -1;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].equals(variable))
+                slot = i;
+            else
+                values[i] = knowns.get(slots[i]);
+        }
+        SolveResult res = new SolveResult();
+        res.equationId = e.getId();
+        res.equation = e.getInfix();
+        res.variable = variable;
+        res.method = SolveResult.NUMERIC;
+        if (slot < 0) {
+            // the unknown does not occur: a constant, answered like the degree-0 polynomial case
+            res.c = program.evaluate(values);
+            findRoots(res);
+            return res;
+        }
+        NumericSolver.Result r = numericSolver.solve(program, values, slot);
+        res.degree = -1;
+        res.solutions = r.roots;
+        res.convergence = r.stats;
+        return res;
+    }
+
+    private SolveResult solveUncached(Equation e, String variable, Map<String, Double> knowns) {
+        MultiPolynomial expanded = e.getPolynomial();
+        // equations that could not be expanded at store time take the tree walk
+        Polynomial poly = polynomialTimer.record(() -> {
+            if (expanded != null)
+                return expanded.substitute(variable, knowns);
+            // report a missing known in text order, as the expanded path does
+            PolynomialUtils.requireKnowns(e.getProgram().getSlots(), variable, knowns);
+            return PolynomialUtils.toPolynomial(e.getRoot(), variable, knowns);
+        });
+
+        int deg = poly.degree();
+        if (deg > PolynomialRoots.MAX_DEGREE)
+            throw PolynomialUtils.degreeTooHigh();
+
+        double a = poly.coefficient(2);
+        double b = poly.coefficient(1);
+        double c = poly.coefficient(0);
 
         SolveResult res = new SolveResult();
         res.equationId = e.getId();
@@ -71,11 +458,29 @@ public class EquationServiceImpl implements EquationService {
         res.a = a;
         res.b = b;
         res.c = c;
+        if (deg > 2)
+            res.coefficients = poly.coefficients();
+        rootsTimer.record(() -> findRoots(res));
+        return res;
+    }
 
+    private static void findRoots(SolveResult res) {
+        int deg = res.degree;
+        double a = res.a, b = res.b, c = res.c;
+        if (deg > 2) {
+            PolynomialRoots.Roots roots = hasNonZero(res.coefficients, 1) ? PolynomialRoots.find(res.coefficients)
+                    : null;
+            if (roots != null) {
+                res.solutions = roots.real;
+                res.complexSolutions = roots.complex;
+                return;
+            }
+            deg = 0; // every non-constant coefficient cancelled
+        }
         if (deg == 0) {
             if (Math.abs(c) < 1e-12) {
                 res.solutions = new double[] {};
-                return res;
+                return;
             }
             throw new InvalidEquationException("No solution (constant != 0)");
         }
@@ -83,22 +488,228 @@ public class EquationServiceImpl implements EquationService {
             if (Math.abs(b) < 1e-12)
                 throw new InvalidEquationException("Invalid linear equation (b=0)");
             res.solutions = new double[] { -c / b };
-            return res;
+            return;
         }
         // quadratic
         double disc = b * b - 4 * a * c;
-        if (disc < -1e-12)
-            throw new InvalidEquationException("No real roots (discriminant < 0)");
+        if (disc < -1e-12) {
+            double im = Math.sqrt(-disc) / (2 * Math.abs(a));
+            res.solutions = new double[] {};
+            res.complexSolutions = new double[][] { { -b / (2 * a), -im }, { -b / (2 * a), im } };
+            return;
+        }
         double sqrt = Math.sqrt(Math.max(0.0, disc));
         res.solutions = new double[] { (-b - sqrt) / (2 * a), (-b + sqrt) / (2 * a) };
-        return res;
+        res.complexSolutions = new double[][] {};
+    }
+
+    private static boolean onlyComplexRoots(SolveResult res) {
+        return res.solutions.length == 0 && res.complexSolutions != null && res.complexSolutions.length > 0;
+    }
+
+    private static InvalidEquationException noRealRoots(SolveResult res) {
+        return new InvalidEquationException(res.degree == 2 ? "No real roots (discriminant < 0)" : "No real roots");
+    }
+
+    @Override
+    public Sweep sweep(long id, String variable, Map<String, double[]> axes) {
+        String var = (variable == null || variable.isBlank()) ? "x" : variable;
+        Equation e = get(id);
+        if (axes.containsKey(var))
+            throw new IllegalArgumentException("Cannot sweep '" + var + "', the variable being solved for");
+        MultiPolynomial expanded = e.getPolynomial();
+        String[] knowns;
+        Supplier<PointSolver> solvers;
+        if (expanded != null) {
+            PolynomialUtils.requireKnowns(expanded.variables(), var, axes);
+            MultiPolynomial.Coefficients form = expanded.coefficientsOf(var);
+            if (form.degree() > PolynomialRoots.MAX_DEGREE)
+                throw PolynomialUtils.degreeTooHigh();
+            knowns = form.knowns();
+            solvers = () -> polynomialPoints(e, var, form);
+        } else {
+            // as /solve in auto mode: a tree walk with each point's knowns substituted, else the numeric solver
+            String[] slots = e.getProgram().getSlots();
+            PolynomialUtils.requireKnowns(slots, var, axes);
+            int slot = Arrays.asList(slots).indexOf(var);
+            knowns = new String[slots.length - (slot < 0 ? 0 : 1)];
+            for (int i = 0, k = 0; i < slots.length; i++)
+                if (i != slot)
+                    knowns[k++] = slots[i];
+            Node root = e.getRoot();
+            solvers = () -> substitutedPoints(e, var, root, knowns, slot);
+        }
+
+        String[] names = axes.keySet().toArray(new String[0]);
+        double[][] values = new double[names.length][];
+        long points = 1;
+        for (int a = 0; a < names.length; a++) {
+            values[a] = axes.get(names[a]);
+            if (values[a] == null)
+                throw new IllegalArgumentException("Missing values for variable '" + names[a] + "'");
+            points *= values[a].length;
+            if (points > MAX_SWEEP_POINTS)
+                throw new IllegalArgumentException("Sweep grid exceeds " + MAX_SWEEP_POINTS + " points");
+        }
+        // axis feeding each known
+        int[] axisOf = new int[knowns.length];
+        for (int k = 0; k < knowns.length; k++)
+            axisOf[k] = Arrays.asList(names).indexOf(knowns[k]);
+
+        long total = points;
+        return new Sweep() {
+            @Override
+            public long points() {
+                return total;
+            }
+
+            @Override
+            public void forEach(Consumer<SweepBlock> sink) {
+                long blocks = (total + SWEEP_BLOCK_POINTS - 1) / SWEEP_BLOCK_POINTS;
+                int window = 4 * ForkJoinPool.getCommonPoolParallelism();
+                SweepBlock[] ready = new SweepBlock[window];
+                for (long start = 0; start < blocks; start += window) {
+                    long from = start;
+                    int n = (int) Math.min(window, blocks - start);
+                    IntStream.range(0, n).parallel().forEach(b -> ready[b] = sweepBlock(solvers.get(), values, axisOf,
+                            (from + b) * SWEEP_BLOCK_POINTS, Math.min(total, (from + b + 1) * SWEEP_BLOCK_POINTS)));
+                    for (int b = 0; b < n; b++) {
+                        sink.accept(ready[b]);
+                        ready[b] = null;
+                    }
+                }
+            }
+        };
+    }
+
+    // Real roots at one grid point, given its knowns in axisOf order; each block gets its own.
+    private interface PointSolver {
+        double[] solve(double[] known);
+    }
+
+    // Solves points [first, end) of the grid; point p has axis digits in mixed radix, last axis fastest.
+    private static SweepBlock sweepBlock(PointSolver solver, double[][] axes, int[] axisOf, long first, long end) {
+        int size = (int) (end - first);
+        SweepBlock block = new SweepBlock();
+        block.first = first;
+        block.solutions = new double[size][];
+        block.errors = new String[size];
+        int[] digit = new int[axes.length];
+        long rem = first;
+        for (int a = axes.length - 1; a >= 0; a--) {
+            digit[a] = (int) (rem % axes[a].length);
+            rem /= axes[a].length;
+        }
+        double[] known = new double[axisOf.length];
+        for (int i = 0; i < size; i++) {
+            for (int k = 0; k < axisOf.length; k++)
+                known[k] = axes[axisOf[k]][digit[axisOf[k]]];
+            try {
+                block.solutions[i] = solver.solve(known);
+            } catch (InvalidEquationException | ArithmeticException ex) {
+                block.errors[i] = ex.getMessage();
+            }
+            for (int a = axes.length - 1; a >= 0 && ++digit[a] == axes[a].length; a--)
+                digit[a] = 0;
+        }
+        return block;
+    }
+
+    // the coefficients in the unknown are evaluated at the point, then solved as /solve would
+    private static PointSolver polynomialPoints(Equation e, String var, MultiPolynomial.Coefficients form) {
+        double[] coeffs = new double[form.degree() + 1];
+        SolveResult res = new SolveResult();
+        res.equationId = e.getId();
+        res.equation = e.getInfix();
+        res.variable = var;
+        return known -> {
+            form.evaluate(known, coeffs);
+            res.degree = form.degree();
+            res.a = coeffs.length > 2 ? coeffs[2] : 0.0;
+            res.b = coeffs.length > 1 ? coeffs[1] : 0.0;
+            res.c = coeffs[0];
+            res.coefficients = form.degree() > 2 ? coeffs : null;
+            res.complexSolutions = null;
+            findRoots(res);
+            if (onlyComplexRoots(res))
+                throw noRealRoots(res);
+            return res.solutions;
+        };
+    }
+
+    // knowns are the program's other slots in slot order; slot is the unknown's, or -1 when it does not occur
+    private PointSolver substitutedPoints(Equation e, String var, Node root, String[] knowns, int slot) {
+        CompiledExpression program = e.getProgram();
+        double[] values = new double[program.getSlots().length];
+        Map<String, Double> named = new HashMap<>();
+        SolveResult res = new SolveResult();
+        return known -> {
+            for (int k = 0; k < knowns.length; k++)
+                named.put(knowns[k], known[k]);
+            try {
+                Polynomial poly = PolynomialUtils.toPolynomial(root, var, named);
+                if (poly.degree() > PolynomialRoots.MAX_DEGREE)
+                    throw PolynomialUtils.degreeTooHigh();
+                res.degree = poly.degree();
+                res.a = poly.coefficient(2);
+                res.b = poly.coefficient(1);
+                res.c = poly.coefficient(0);
+                res.coefficients = res.degree > 2 ? poly.coefficients() : null;
+                res.complexSolutions = null;
+                findRoots(res);
+                if (onlyComplexRoots(res))
+                    throw noRealRoots(res);
+                return res.solutions;
+            } catch (NonPolynomialException ex) {
+                for (int i = 0, k = 0; i < values.length; i++)
+                    if (i != slot)
+                        values[i] = known[k++];
+                if (slot < 0)
+                    throw ex; // a constant always substitutes to a polynomial
+                return numericSolver.solve(program, values, slot).roots;
+            }
+        };
+    }
+
+    private static boolean hasNonZero(double[] coeffs, int from) {
+        for (int k = from; k < coeffs.length; k++)
+            if (coeffs[k] != 0.0)
+                return true;
+        return false;
     }
 
     // 🔹 new
     @Override
-    public void delete(String id) {
-        if (!store.containsKey(id))
+    public void delete(long id) {
+        Equation removed;
+        long ticket = 0;
+        if (log == null) {
+            removed = equations.remove(id);
+        } else {
+            logOrder.writeLock().lock();
+            try {
+                removed = equations.remove(id);
+                if (removed != null)
+                    ticket = log.appendDelete(id);
+            } finally {
+                logOrder.writeLock().unlock();
+            }
+        }
+        if (removed == null)
             throw new EquationNotFoundException("Equation id " + id + " not found");
-        store.remove(id);
+        solveCache.invalidate(id);
+        if (log != null)
+            log.commit(ticket);
+    }
+
+    @Override
+    public long duplicateOf(long id) {
+        long first = equations.firstWith(get(id).getTree());
+        return first == id ? 0 : first;
+    }
+
+    @Override
+    public SolveCache.Stats solveCacheStats() {
+        return solveCache.stats();
     }
 }
@@ -0,0 +1,39 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.model.CompactTree;
+import com.algebra.algebra_solver.model.Equation;
+
+/**
+ * Where {@link EquationServiceImpl} keeps its equations, by numeric id. Ids
+ * are assigned by the service; stores only index them.
+ */
+interface EquationStore {
+    /** Add an equation whose id is already set. */
+    void put(Equation e);
+
+    /** The equation, or null when there is none with this id. */
+    Equation get(long id);
+
+    /** The equation's text, or null when there is none with this id. */
+    String infix(long id);
+
+    /** Remove and return the equation, or null when there is none with this id. */
+    Equation remove(long id);
+
+    /** Equations with ids above {@code after}, in id order; a live view. */
+    Iterable<Equation> after(long after);
+
+    /**
+     * A stored equation with this tree whose derived forms a new one may
+     * share, or null.
+     */
+    Equation twin(CompactTree tree);
+
+    /** Lowest id stored with this tree, or 0. */
+    long firstWith(CompactTree tree);
+
+    int size();
+
+    /** Estimated heap bytes per stored equation, for the footprint gauge. */
+    double bytesPerEquation();
+}
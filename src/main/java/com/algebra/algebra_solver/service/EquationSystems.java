@@ -0,0 +1,123 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.exception.NonPolynomialException;
+import com.algebra.algebra_solver.model.Equation;
+import com.algebra.algebra_solver.util.MultiPolynomial;
+import com.algebra.algebra_solver.util.SparseLinearSolver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/**
+ * Solves systems of stored equations, each read as {@code expression = 0},
+ * that are linear in the unknowns once the knowns are substituted. Each
+ * equation's stored expansion is reduced to one sparse row and the rows are
+ * solved together by {@link SparseLinearSolver}.
+ */
+@Service
+public class EquationSystems {
+    private final EquationService equations;
+    private final int maxIterations;
+    private final double tolerance;
+
+    public EquationSystems(EquationService equations) {
+        this(equations, 10_000, 1e-10);
+    }
+
+    @Autowired
+    public EquationSystems(EquationService equations,
+            @Value("${equations.systems.max-iterations:10000}") int maxIterations,
+            @Value("${equations.systems.tolerance:1e-10}") double tolerance) {
+        this.equations = equations;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+
+    public static class Result {
+        public List<Long> equationIds;
+        public Map<String, Double> solution; // per unknown, in the order solved for
+        public String method; // SparseLinearSolver.LU or CGLS
+        public int iterations;
+        public double residual;
+    }
+
+    /**
+     * Solve for {@code unknowns}, or when null or empty for every variable of
+     * the equations that is not a known, in name order.
+     */
+    public Result solve(List<Long> equationIds, List<String> unknowns, Map<String, Double> knowns) {
+        if (equationIds == null || equationIds.isEmpty())
+            throw new IllegalArgumentException("A system needs at least one equation id");
+        Map<String, Double> known = knowns == null ? Collections.emptyMap() : knowns;
+        Equation[] rows = new Equation[equationIds.size()];
+        IntStream.range(0, rows.length).parallel().forEach(i -> rows[i] = equations.get(equationIds.get(i)));
+
+        if (unknowns == null || unknowns.isEmpty()) {
+            TreeSet<String> names = new TreeSet<>();
+            for (Equation e : rows)
+                names.addAll(e.getVariables());
+            names.removeAll(known.keySet());
+            unknowns = List.copyOf(names);
+        }
+        Map<String, Integer> columnOf = new HashMap<>();
+        for (String u : unknowns) {
+            if (columnOf.putIfAbsent(u, columnOf.size()) != null)
+                throw new IllegalArgumentException("Unknown '" + u + "' is listed twice");
+            if (known.containsKey(u))
+                throw new IllegalArgumentException("'" + u + "' is both an unknown and a known");
+        }
+
+        int[][] columns = new int[rows.length][];
+        double[][] coefficients = new double[rows.length][];
+        double[] rhs = new double[rows.length];
+        IntStream.range(0, rows.length).parallel().forEach(i -> {
+            MultiPolynomial.LinearForm form = linearize(rows[i], columnOf, known);
+            columns[i] = form.columns;
+            coefficients[i] = form.coefficients;
+            rhs[i] = -form.constant;
+        });
+        boolean[] used = new boolean[unknowns.size()];
+        for (int[] row : columns)
+            for (int c : row)
+                used[c] = true;
+        for (int c = 0; c < used.length; c++)
+            if (!used[c])
+                throw new IllegalArgumentException("Unknown '" + unknowns.get(c) + "' does not appear in any equation");
+
+        SparseLinearSolver.Solution s = SparseLinearSolver.solve(
+                SparseLinearSolver.Matrix.of(unknowns.size(), columns, coefficients), rhs, maxIterations, tolerance);
+        Result result = new Result();
+        result.equationIds = new ArrayList<>(rows.length);
+        for (Equation e : rows)
+            result.equationIds.add(e.getId());
+        result.solution = new LinkedHashMap<>();
+        for (int c = 0; c < unknowns.size(); c++)
+            result.solution.put(unknowns.get(c), s.x[c]);
+        result.method = s.method;
+        result.iterations = s.iterations;
+        result.residual = s.residual;
+        return result;
+    }
+
+    private static MultiPolynomial.LinearForm linearize(Equation e, Map<String, Integer> columnOf,
+            Map<String, Double> knowns) {
+        MultiPolynomial expanded = e.getPolynomial();
+        if (expanded == null)
+            throw new NonPolynomialException("Equation id " + e.getId() + " does not expand into a polynomial");
+        try {
+            return expanded.linearize(columnOf, knowns);
+        } catch (NonPolynomialException ex) {
+            throw new NonPolynomialException("Equation id " + e.getId() + " is not linear in the unknowns: "
+                    + ex.getMessage());
+        }
+    }
+}
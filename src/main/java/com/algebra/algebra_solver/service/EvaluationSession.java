@@ -0,0 +1,131 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.exception.SessionNotFoundException;
+import com.algebra.algebra_solver.model.IncrementalEvaluator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * One equation bound to a variable assignment that clients change a few
+ * variables at a time. Each change re-evaluates only the nodes that depend
+ * on it (see {@link IncrementalEvaluator}) and is pushed to the listeners in
+ * version order. Updates are serialised per session.
+ */
+public final class EvaluationSession {
+    private final String id;
+    private final long equationId;
+    private final String equation;
+    private final IncrementalEvaluator evaluator;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private Snapshot current;
+    private boolean closed;
+    private volatile long lastUsedNanos = System.nanoTime();
+
+    /** Receives each result of a session, then its close. */
+    public interface Listener {
+        void onResult(Snapshot snapshot);
+
+        void onClose();
+    }
+
+    public static class Snapshot {
+        public final long version;
+        public final double result;
+        public final Map<String, Double> variables; // in name order
+        public final int recomputed; // nodes evaluated for this version
+        public final int nodes;
+
+        Snapshot(long version, IncrementalEvaluator evaluator) {
+            this.version = version;
+            this.result = evaluator.result();
+            this.variables = evaluator.variables();
+            this.recomputed = evaluator.recomputed();
+            this.nodes = evaluator.size();
+        }
+    }
+
+    EvaluationSession(String id, long equationId, String equation, IncrementalEvaluator evaluator) {
+        this.id = id;
+        this.equationId = equationId;
+        this.equation = equation;
+        this.evaluator = evaluator;
+        this.current = new Snapshot(1, evaluator);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getEquationId() {
+        return equationId;
+    }
+
+    public String getEquation() {
+        return equation;
+    }
+
+    public synchronized Snapshot current() {
+        return current;
+    }
+
+    /** Change some variables and re-evaluate what depends on them; other names are ignored. */
+    public synchronized Snapshot update(Map<String, Double> changes) {
+        if (closed)
+            throw new SessionNotFoundException("Session id " + id + " not found");
+        touch();
+        evaluator.update(changes);
+        current = new Snapshot(current.version + 1, evaluator);
+        for (Listener l : listeners)
+            deliver(l, current);
+        return current;
+    }
+
+    /** Send the current result to {@code listener} now and every later one as it is computed. */
+    public synchronized void subscribe(Listener listener) {
+        if (closed) {
+            listener.onClose();
+            return;
+        }
+        touch();
+        listeners.add(listener);
+        deliver(listener, current);
+    }
+
+    public void unsubscribe(Listener listener) {
+        // the idle clock starts again when the last subscriber leaves
+        touch();
+        listeners.remove(listener);
+    }
+
+    // a session with subscribers is in use however long since its last update
+    long lastUsedNanos() {
+        return listeners.isEmpty() ? lastUsedNanos : System.nanoTime();
+    }
+
+    void touch() {
+        lastUsedNanos = System.nanoTime();
+    }
+
+    synchronized void close() {
+        closed = true;
+        for (Listener l : listeners) {
+            try {
+                l.onClose();
+            } catch (RuntimeException ex) {
+                // the listener is dropped either way
+            }
+        }
+        listeners.clear();
+    }
+
+    // a listener that fails (e.g. its client went away) is dropped rather than failing the update
+    private void deliver(Listener listener, Snapshot snapshot) {
+        try {
+            listener.onResult(snapshot);
+        } catch (RuntimeException ex) {
+            listeners.remove(listener);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.exception.EquationNotFoundException;
+import com.algebra.algebra_solver.exception.SessionNotFoundException;
+import com.algebra.algebra_solver.model.Equation;
+import com.algebra.algebra_solver.model.IncrementalEvaluator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Open evaluation sessions by id. A session holds the tree it was opened on
+ * and is closed when its equation is deleted. Sessions idle for longer than
+ * the configured timeout expire, unless someone is subscribed to them; when
+ * the configured maximum is reached, opening another first drops the expired
+ * ones, then the least recently used.
+ */
+@Service
+public class EvaluationSessions {
+    private final EquationService equations;
+    private final ConcurrentHashMap<String, EvaluationSession> sessions = new ConcurrentHashMap<>();
+    private final int maxSessions;
+    private final long idleNanos;
+
+    public EvaluationSessions(EquationService equations) {
+        this(equations, 10_000, Duration.ofMinutes(30), new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public EvaluationSessions(EquationService equations, @Value("${equations.sessions.max:10000}") int maxSessions,
+            @Value("${equations.sessions.idle-timeout:30m}") Duration idleTimeout, MeterRegistry registry) {
+        this.equations = equations;
+        this.maxSessions = Math.max(1, maxSessions);
+        this.idleNanos = idleTimeout.toNanos();
+        registry.gauge("equations.sessions", sessions, Map::size);
+    }
+
+    /** Bind every variable of the equation and evaluate it in full. */
+    public EvaluationSession open(long equationId, Map<String, Double> vars) {
+        Equation e = equations.get(equationId);
+        EvaluationSession session = new EvaluationSession(UUID.randomUUID().toString(), e.getId(), e.getInfix(),
+                new IncrementalEvaluator(e.getTree(), vars));
+        // opens are serialised so concurrent ones cannot all pass the size check
+        synchronized (this) {
+            while (sessions.size() >= maxSessions)
+                makeRoom();
+            sessions.put(session.getId(), session);
+        }
+        // a delete that ran closeAll before the put missed this session, but is seen here
+        try {
+            equations.infixOf(equationId);
+        } catch (EquationNotFoundException ex) {
+            close(session);
+            throw ex;
+        }
+        return session;
+    }
+
+    public EvaluationSession get(String id) {
+        EvaluationSession session = sessions.get(id);
+        if (session == null || expired(session, System.nanoTime())) {
+            if (session != null)
+                close(session);
+            throw new SessionNotFoundException("Session id " + id + " not found");
+        }
+        session.touch();
+        return session;
+    }
+
+    public void close(String id) {
+        close(get(id));
+    }
+
+    /** Close every session on an equation, e.g. once it is deleted. */
+    public void closeAll(long equationId) {
+        for (EvaluationSession session : sessions.values())
+            if (session.getEquationId() == equationId)
+                close(session);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    private void makeRoom() {
+        long now = System.nanoTime();
+        EvaluationSession oldest = null;
+        boolean freed = false;
+        for (EvaluationSession session : sessions.values()) {
+            if (expired(session, now)) {
+                close(session);
+                freed = true;
+            } else if (oldest == null || session.lastUsedNanos() - oldest.lastUsedNanos() < 0) {
+                oldest = session;
+            }
+        }
+        if (!freed && oldest != null)
+            close(oldest);
+    }
+
+    private boolean expired(EvaluationSession session, long now) {
+        return now - session.lastUsedNanos() > idleNanos;
+    }
+
+    private void close(EvaluationSession session) {
+        if (sessions.remove(session.getId(), session))
+            session.close();
+    }
+}
@@ -0,0 +1,146 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.model.CompactTree;
+import com.algebra.algebra_solver.model.Equation;
+import com.algebra.algebra_solver.model.Footprint;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Equations as heap objects, indexed by a {@link LongTable} for lookups and a
+ * skip list for id order; twins share their tree, program and expansion. Ids
+ * have gaps (per-thread blocks, deletes), so paging walks the sorted index
+ * rather than the id range.
+ */
+final class HeapEquationStore implements EquationStore {
+    // the bytes-per-equation gauge estimates over this many of the newest equations
+    static final int FOOTPRINT_SAMPLE = 1024;
+    // a byRoot entry holding a single id, and one id's share of a set of twins
+    private static final long ROOT_ENTRY_BYTES = 48, TWIN_ENTRY_BYTES = 64;
+    // a skip-list node, its boxed key and its share of the index levels
+    private static final long ORDER_ENTRY_BYTES = 56;
+
+    private final LongTable<Equation> store = new LongTable<>();
+    private final ConcurrentNavigableMap<Long, Equation> ordered = new ConcurrentSkipListMap<>();
+    // trees are hash-consed before they are encoded, so identical equations have equal
+    // compact trees; maps each to its id, or once it has twins to the sorted set of their ids
+    private final Map<CompactTree, Object> byRoot = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(Equation e) {
+        long id = e.getId();
+        store.put(id, e);
+        ordered.put(id, e);
+        byRoot.merge(e.getTree(), id, HeapEquationStore::withId);
+    }
+
+    @Override
+    public Equation get(long id) {
+        return id <= 0 ? null : store.get(id);
+    }
+
+    @Override
+    public String infix(long id) {
+        Equation e = get(id);
+        return e == null ? null : e.getInfix();
+    }
+
+    @Override
+    public Equation remove(long id) {
+        Equation removed = id <= 0 ? null : store.remove(id);
+        if (removed == null)
+            return null;
+        ordered.remove(id);
+        byRoot.computeIfPresent(removed.getTree(), (tree, ids) -> withoutId(ids, id));
+        return removed;
+    }
+
+    // sets only change inside byRoot's atomic updates; readers just take their lowest id
+    private static Object withId(Object ids, Object id) {
+        if (ids instanceof Long single) {
+            NavigableSet<Long> twins = new ConcurrentSkipListSet<>();
+            twins.add(single);
+            twins.add((Long) id);
+            return twins;
+        }
+        twins(ids).add((Long) id);
+        return ids;
+    }
+
+    private static Object withoutId(Object ids, long id) {
+        if (ids instanceof Long single)
+            return single == id ? null : ids;
+        NavigableSet<Long> twins = twins(ids);
+        twins.remove(id);
+        // back to a single id; the set is dropped, so it is never emptied under a reader
+        return twins.size() > 1 ? twins : twins.first();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static NavigableSet<Long> twins(Object ids) {
+        return (NavigableSet<Long>) ids;
+    }
+
+    private static long lowest(Object ids) {
+        return ids instanceof Long single ? single : twins(ids).first();
+    }
+
+    @Override
+    public Iterable<Equation> after(long after) {
+        return ordered.tailMap(after, false).values();
+    }
+
+    @Override
+    public Equation twin(CompactTree tree) {
+        Object ids = byRoot.get(tree);
+        Equation twin = ids == null ? null : store.get(lowest(ids));
+        return twin != null && twin.getTree().equals(tree) ? twin : null;
+    }
+
+    @Override
+    public long firstWith(CompactTree tree) {
+        Object ids = byRoot.get(tree);
+        return ids == null ? 0 : lowest(ids);
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    // Estimated over the newest FOOTPRINT_SAMPLE: each equation's own object, id and text, its share
+    // of the index, plus the tree, program and expansion it may share with twins, counted once per
+    // sample. Sampling keeps a scrape O(1) however many equations are stored.
+    @Override
+    public double bytesPerEquation() {
+        Set<Object> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bytes = 0;
+        int n = 0;
+        int size = store.size();
+        // index slots (a key and a reference each) spread over the equations
+        double index = size == 0 ? 0.0 : store.capacity() * 12.0 / size;
+        for (Equation e : ordered.descendingMap().values()) {
+            if (n == FOOTPRINT_SAMPLE)
+                break;
+            n++;
+            bytes += Footprint.object(4, 8) + Footprint.string(e.getInfix())
+                    + ORDER_ENTRY_BYTES;
+            bytes += byRoot.get(e.getTree()) instanceof Long ? ROOT_ENTRY_BYTES : TWIN_ENTRY_BYTES;
+            if (shared.add(e.getTree()))
+                bytes += e.getTree().sizeInBytes();
+            if (e.getProgram() != null && shared.add(e.getProgram()))
+                bytes += e.getProgram().sizeInBytes();
+            if (e.getPolynomial() != null && shared.add(e.getPolynomial()))
+                bytes += e.getPolynomial().sizeInBytes();
+        }
+        return n == 0 ? 0.0 : (double) bytes / n + index;
+    }
+}
@@ -0,0 +1,98 @@
+package com.algebra.algebra_solver.service;
+
+import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out equation ids from per-thread blocks, so concurrent stores touch
+ * the shared counter once per {@link #BLOCK} ids instead of once per id. Ids
+ * are unique and never reused, but are only increasing within a thread.
+ * <p>
+ * A block is dropped once its thread has died: the last id it handed out is
+ * folded into {@code retired}, so the number of blocks tracks the live
+ * threads rather than every thread that ever stored.
+ */
+final class IdAllocator {
+    static final int BLOCK = 256;
+
+    private final AtomicLong reserved = new AtomicLong(); // last id of the newest block or range
+    private final AtomicLong lastRange = new AtomicLong(); // last id of the newest range
+    private final AtomicLong retired = new AtomicLong(); // last id issued from a dropped block
+    private final Queue<Block> blocks = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Block> mine = ThreadLocal.withInitial(() -> {
+        reclaim();
+        Block b = new Block(Thread.currentThread());
+        blocks.add(b);
+        return b;
+    });
+
+    private static final class Block {
+        final WeakReference<Thread> owner;
+        volatile long next = 1; // read by lastIssued() on other threads
+        long end;
+
+        Block(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        boolean orphaned() {
+            Thread t = owner.get();
+            return t == null || !t.isAlive();
+        }
+    }
+
+    long next() {
+        Block b = mine.get();
+        long id = b.next;
+        if (id > b.end) {
+            b.end = reserved.addAndGet(BLOCK);
+            id = b.end - BLOCK + 1;
+        }
+        b.next = id + 1;
+        return id;
+    }
+
+    /** First of {@code n} consecutive ids. */
+    long range(int n) {
+        long last = reserved.addAndGet(n);
+        lastRange.accumulateAndGet(last, Math::max);
+        return last - n + 1;
+    }
+
+    /**
+     * Highest id handed out so far. Ids reserved in a block but not yet
+     * handed out are not counted: after a restart they may be issued again,
+     * which is safe because nothing was stored under them.
+     */
+    long lastIssued() {
+        reclaim();
+        long last = lastRange.get();
+        for (Block b : blocks)
+            last = Math.max(last, b.next - 1);
+        // read after the blocks: one dropped meanwhile was retired before it left the queue
+        return Math.max(last, retired.get());
+    }
+
+    /** Blocks currently tracked, for tests. */
+    int blocks() {
+        return blocks.size();
+    }
+
+    // a dead thread issues nothing more, so its block's last id is final
+    private void reclaim() {
+        blocks.removeIf(b -> {
+            if (!b.orphaned())
+                return false;
+            retired.accumulateAndGet(b.next - 1, Math::max);
+            return true;
+        });
+    }
+
+    /** Continue after {@code last}, e.g. the highest id recovered from the log. */
+    void resume(long last) {
+        reserved.accumulateAndGet(last, Math::max);
+        lastRange.accumulateAndGet(last, Math::max);
+    }
+}
@@ -0,0 +1,173 @@
+package com.algebra.algebra_solver.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Concurrent map from positive {@code long} keys to values, without boxing:
+ * keys and values sit in parallel arrays probed linearly.
+ * <p>
+ * The table is split into stripes by key hash. Writes lock their stripe;
+ * reads lock nothing. A writer stores the value before the key (with release
+ * semantics), so a reader that finds the key (with acquire semantics) also
+ * sees its value. Removal leaves a tombstone that is only cleared when a
+ * stripe that fills up is rebuilt into fresh arrays, published whole: a slot
+ * never changes key within one pair of arrays, so a value read after its key
+ * always belongs to that key (or is null once it was removed).
+ */
+final class LongTable<V> {
+    private static final int STRIPE_BITS = 4;
+    private static final long EMPTY = 0L, TOMBSTONE = -1L;
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    @SuppressWarnings("unchecked")
+    private final Stripe<V>[] stripes = (Stripe<V>[]) new Stripe<?>[1 << STRIPE_BITS];
+
+    LongTable() {
+        for (int i = 0; i < stripes.length; i++)
+            stripes[i] = new Stripe<>();
+    }
+
+    /** The value for {@code key}, or null. */
+    V get(long key) {
+        long h = hash(key);
+        return stripe(h).get(key, h);
+    }
+
+    /** Map {@code key} to {@code value}; returns the previous value, or null. */
+    V put(long key, V value) {
+        if (key <= 0 || value == null)
+            throw new IllegalArgumentException("Keys must be positive and values non-null");
+        long h = hash(key);
+        Stripe<V> s = stripe(h);
+        synchronized (s) {
+            return s.put(key, h, value);
+        }
+    }
+
+    /** Remove {@code key}; returns its value, or null when it was absent. */
+    V remove(long key) {
+        long h = hash(key);
+        Stripe<V> s = stripe(h);
+        synchronized (s) {
+            return s.remove(key, h);
+        }
+    }
+
+    int size() {
+        int n = 0;
+        for (Stripe<V> s : stripes)
+            n += s.size;
+        return n;
+    }
+
+    /** Combined length of the stripes' arrays, for footprint estimates. */
+    long capacity() {
+        long n = 0;
+        for (Stripe<V> s : stripes)
+            n += s.slots.keys.length;
+        return n;
+    }
+
+    private Stripe<V> stripe(long h) {
+        return stripes[(int) (h >>> (64 - STRIPE_BITS))];
+    }
+
+    // a multiplicative hash is a bijection on the low bits, so sequential ids never collide there
+    private static long hash(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    // keys and values, replaced together so a reader never pairs arrays of two generations
+    private record Slots(long[] keys, Object[] values) {
+        Slots(int capacity) {
+            this(new long[capacity], new Object[capacity]);
+        }
+    }
+
+    private static final class Stripe<V> {
+        volatile Slots slots = new Slots(16);
+        volatile int size;
+        int used; // live entries and tombstones, under the lock
+
+        @SuppressWarnings("unchecked")
+        V get(long key, long h) {
+            Slots t = slots;
+            long[] ks = t.keys;
+            int mask = ks.length - 1;
+            for (int i = (int) h & mask;; i = (i + 1) & mask) {
+                long k = (long) KEYS.getAcquire(ks, i);
+                if (k == key)
+                    return (V) VALUES.getAcquire(t.values, i);
+                if (k == EMPTY)
+                    return null;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V put(long key, long h, V value) {
+            Slots t = slots;
+            long[] ks = t.keys;
+            int mask = ks.length - 1, i = (int) h & mask;
+            for (;; i = (i + 1) & mask) {
+                long k = ks[i];
+                if (k == key) {
+                    V old = (V) t.values[i];
+                    VALUES.setRelease(t.values, i, value);
+                    return old;
+                }
+                if (k == EMPTY)
+                    break;
+            }
+            // tombstones are never reused in place: a reader may still be between reading their key and value
+            if (2 * (used + 1) > ks.length) {
+                resize();
+                return put(key, h, value);
+            }
+            used++;
+            VALUES.setRelease(t.values, i, value);
+            KEYS.setRelease(ks, i, key);
+            size++;
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        V remove(long key, long h) {
+            Slots t = slots;
+            long[] ks = t.keys;
+            int mask = ks.length - 1;
+            for (int i = (int) h & mask; ks[i] != EMPTY; i = (i + 1) & mask) {
+                if (ks[i] == key) {
+                    V old = (V) t.values[i];
+                    KEYS.setRelease(ks, i, TOMBSTONE);
+                    VALUES.setRelease(t.values, i, null);
+                    size--;
+                    return old;
+                }
+            }
+            return null;
+        }
+
+        // rebuild at most a quarter full, dropping tombstones
+        private void resize() {
+            int capacity = 16;
+            while (capacity < 4L * (size + 1))
+                capacity <<= 1;
+            Slots old = slots, next = new Slots(capacity);
+            int mask = capacity - 1;
+            for (int j = 0; j < old.keys.length; j++) {
+                long k = old.keys[j];
+                if (k == EMPTY || k == TOMBSTONE)
+                    continue;
+                int i = (int) hash(k) & mask;
+                while (next.keys[i] != EMPTY)
+                    i = (i + 1) & mask;
+                next.keys[i] = k;
+                next.values[i] = old.values[j];
+            }
+            used = size;
+            slots = next;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.exception.InvalidEquationException;
+import com.algebra.algebra_solver.model.CompiledExpression;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Numeric root finding for equations the polynomial solver rejects (division
+ * by the unknown, non-integer or variable exponents, degree above
+ * {@link com.algebra.algebra_solver.util.PolynomialRoots#MAX_DEGREE}).
+ * <p>
+ * The unknown is sampled on a grid that is dense near zero and geometric
+ * further out ({@code x = s * sinh(u)} for evenly spaced {@code u}, up to
+ * {@code ±range}). Every sign change brackets a root, which is refined by
+ * Newton steps using the derivative from a dual-number evaluation; a step that
+ * leaves the bracket or does not halve it falls back to bisection, so each
+ * refinement always converges. Brackets around poles are recognised by their
+ * residual and dropped. Roots of even multiplicity that do not change sign
+ * are only found when a sample hits them exactly.
+ */
+@Component
+public class NumericSolver {
+    private static final double GRID_SCALE = 0.01; // grid spacing near zero is about GRID_SCALE * du
+    private static final int MAX_ROOTS = 64;
+
+    private final int maxIterations;
+    private final long timeBudgetNanos;
+    private final double range;
+    private final int samples;
+
+    public NumericSolver() {
+        this(100, Duration.ofMillis(50), 1e6, 4000);
+    }
+
+    @Autowired
+    public NumericSolver(@Value("${equations.solve.numeric.max-iterations:100}") int maxIterations,
+            @Value("${equations.solve.numeric.time-budget:50ms}") Duration timeBudget,
+            @Value("${equations.solve.numeric.range:1e6}") double range,
+            @Value("${equations.solve.numeric.samples:4000}") int samples) {
+        this.maxIterations = maxIterations;
+        this.timeBudgetNanos = timeBudget.toNanos();
+        this.range = range;
+        this.samples = Math.max(2, samples);
+    }
+
+    /** How a numeric solve went; returned alongside the roots. */
+    public static class Stats {
+        public int iterations; // Newton/bisection steps over all roots
+        public int evaluations; // function evaluations including the scan
+        public int brackets; // sign changes found by the scan
+        public boolean converged; // every bracketed root met the tolerance
+        public boolean budgetExhausted; // the time budget cut the scan or a refinement short
+        public double maxResidual; // largest |f(root)|
+        public double range;
+        public long elapsedMicros;
+    }
+
+    public static class Result {
+        public double[] roots;
+        public Stats stats;
+    }
+
+    /**
+     * Real roots of the program in {@code slot}, with every other slot fixed
+     * at its entry in {@code values}.
+     *
+     * @throws InvalidEquationException "No real roots found ..." when nothing
+     *                                  is found in range
+     */
+    public Result solve(CompiledExpression program, double[] values, int slot) {
+        long start = System.nanoTime();
+        long deadline = start + timeBudgetNanos;
+        Stats stats = new Stats();
+        stats.range = range;
+        stats.converged = true;
+        double[] x = values.clone();
+        double[] roots = new double[MAX_ROOTS];
+        int found = 0;
+
+        double du = 2 * asinh(range / GRID_SCALE) / (samples - 1);
+        double u0 = -asinh(range / GRID_SCALE);
+        double prevX = Double.NaN, prevF = Double.NaN;
+        for (int i = 0; i < samples && found < MAX_ROOTS; i++) {
+            if ((i & 63) == 0 && System.nanoTime() > deadline) {
+                stats.budgetExhausted = true;
+                break;
+            }
+            double xi = i == samples - 1 ? range : GRID_SCALE * Math.sinh(u0 + i * du);
+            double fi = value(program, x, slot, xi, stats);
+            if (fi == 0.0) {
+                found = add(roots, found, xi);
+            } else if (Double.isFinite(fi) && Double.isFinite(prevF) && prevF != 0.0
+                    && (fi < 0) != (prevF < 0)) {
+                stats.brackets++;
+                double r = refine(program, x, slot, prevX, prevF, xi, fi, deadline, stats);
+                if (!Double.isNaN(r))
+                    found = add(roots, found, r);
+            }
+            prevX = xi;
+            prevF = fi;
+        }
+        stats.elapsedMicros = (System.nanoTime() - start) / 1000;
+        if (found == 0)
+            throw new InvalidEquationException("No real roots found in [" + -range + ", " + range + "]");
+        Result res = new Result();
+        res.roots = Arrays.copyOf(roots, found);
+        Arrays.sort(res.roots);
+        res.stats = stats;
+        return res;
+    }
+
+    // Safeguarded Newton inside [a, b] where f(a) and f(b) differ in sign.
+    // Returns NaN when the bracket turns out to hold a pole instead of a root.
+    private double refine(CompiledExpression program, double[] x, int slot, double a, double fa, double b,
+            double fb, long deadline, Stats stats) {
+        double scale = Math.max(1.0, Math.max(Math.abs(fa), Math.abs(fb)));
+        double[] d = new double[1];
+        double r = a - fa * (b - a) / (fb - fa); // secant start
+        if (!(r > a && r < b))
+            r = 0.5 * (a + b);
+        double fr = Double.NaN;
+        boolean converged = false;
+        for (int it = 0; it < maxIterations; it++) {
+            if (System.nanoTime() > deadline) {
+                stats.budgetExhausted = true;
+                break;
+            }
+            stats.iterations++;
+            double width = b - a;
+            fr = derivative(program, x, slot, r, d, stats);
+            if (fr == 0.0 || width <= 1e-12 * (1 + Math.abs(r))) {
+                converged = true;
+                break;
+            }
+            if (Double.isNaN(fr))
+                return Double.NaN; // undefined inside the bracket: the sign change is a pole's
+            if ((fr < 0) == (fa < 0)) {
+                a = r;
+                fa = fr;
+            } else {
+                b = r;
+            }
+            double next = r - fr / d[0];
+            // bisect when Newton leaves the bracket or would not halve it
+            if (!(next > a && next < b) || Math.abs(next - r) > 0.5 * width)
+                next = 0.5 * (a + b);
+            r = next;
+        }
+        if (!converged) {
+            stats.converged = false;
+            fr = value(program, x, slot, r, stats);
+        }
+        double residual = Math.abs(fr);
+        if (!(residual <= 1e-6 * scale))
+            return Double.NaN; // a pole: the sign changes but |f| grows
+        stats.maxResidual = Math.max(stats.maxResidual, residual);
+        return r;
+    }
+
+    private static double value(CompiledExpression program, double[] x, int slot, double at, Stats stats) {
+        stats.evaluations++;
+        x[slot] = at;
+        try {
+            return program.evaluate(x);
+        } catch (ArithmeticException ex) {
+            return Double.NaN; // division by zero at this point
+        }
+    }
+
+    private static double derivative(CompiledExpression program, double[] x, int slot, double at, double[] d,
+            Stats stats) {
+        stats.evaluations++;
+        x[slot] = at;
+        try {
+            return program.derivative(x, slot, d);
+        } catch (ArithmeticException ex) {
+            return Double.NaN;
+        }
+    }
+
+    // roots arrive in increasing order, so a duplicate can only be the last one
+    private static int add(double[] roots, int found, double r) {
+        if (found > 0 && Math.abs(roots[found - 1] - r) <= 1e-9 * (1 + Math.abs(r)))
+            return found;
+        roots[found] = r;
+        return found + 1;
+    }
+
+    private static double asinh(double v) {
+        return Math.log(v + Math.sqrt(v * v + 1));
+    }
+}
@@ -0,0 +1,54 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.persistence.EquationLog;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * {@link EquationService} over an {@link OffHeapEquationStore}, selected with
+ * {@code equations.store.type=off-heap}. Evaluation runs on the stored record
+ * directly; the other operations work on an {@code Equation} read back from
+ * it for the one request. Programs are not compiled to bytecode here: a
+ * kernel would live on the heap, and a program read back is not kept.
+ */
+@Service
+@ConditionalOnProperty(name = "equations.store.type", havingValue = "off-heap")
+public class OffHeapEquationService extends EquationServiceImpl {
+    private final OffHeapEquationStore offHeap;
+
+    public OffHeapEquationService(int slabBytes) {
+        this(new OffHeapEquationStore(slabBytes), null, new SolveCache(), new NumericSolver(),
+                new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public OffHeapEquationService(@Nullable EquationLog log, SolveCache solveCache, NumericSolver numericSolver,
+            MeterRegistry registry, @Value("${equations.store.off-heap.slab-size:64MB}") DataSize slabSize) {
+        this(new OffHeapEquationStore((int) slabSize.toBytes()), log, solveCache, numericSolver, registry);
+    }
+
+    private OffHeapEquationService(OffHeapEquationStore offHeap, EquationLog log, SolveCache solveCache,
+            NumericSolver numericSolver, MeterRegistry registry) {
+        super(offHeap, log, solveCache, numericSolver, registry, 0);
+        this.offHeap = offHeap;
+        Gauge.builder("equations.store.off-heap.bytes", offHeap, OffHeapEquationStore::allocatedBytes)
+                .description("Direct memory held by equation slabs").tag("kind", "allocated").register(registry);
+        Gauge.builder("equations.store.off-heap.bytes", offHeap, OffHeapEquationStore::liveBytes)
+                .description("Direct memory held by equation slabs").tag("kind", "live").register(registry);
+    }
+
+    @Override
+    public double evaluate(long id, Map<String, Double> vars) {
+        return offHeap.evaluate(id, vars == null ? Collections.emptyMap() : vars);
+    }
+}
@@ -0,0 +1,492 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.exception.EquationNotFoundException;
+import com.algebra.algebra_solver.model.CompactTree;
+import com.algebra.algebra_solver.model.CompiledExpression;
+import com.algebra.algebra_solver.model.Equation;
+import com.algebra.algebra_solver.model.Footprint;
+import com.algebra.algebra_solver.model.SymbolTable;
+import com.algebra.algebra_solver.util.MultiPolynomial;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Equations kept outside the Java heap, one record per equation in slabs of
+ * direct memory. The heap holds only the index from id to record address (8
+ * bytes per id) and a table of tree hashes for duplicate lookups, so a large
+ * store adds almost nothing for the collector to trace.
+ * <p>
+ * Records are bump-allocated in the current slab, and a record larger than a
+ * slab gets a slab of its own. Deleting marks a record dead; once half of a
+ * full slab is dead (checked on each delete, and when allocation moves on to
+ * a new slab) its live records are copied forward and the slab is dropped,
+ * returning its memory when the buffer is collected.
+ * <p>
+ * Writers take the store's lock. Readers take none: they read the address,
+ * then the record, and retry when compaction has dropped the slab in between.
+ * A record is never written again once its address is published, so a reader
+ * holding an old slab still sees a complete record.
+ *
+ * <pre>
+ * int length, int live, long id, int treeHash, int infixBytes,
+ * int codeLength, int constantCount, int slotCount, int maxStack,
+ * int[codeLength] code, int[slotCount] slot symbol ids, double[constantCount] constants,
+ * tree (CompactTree.writeTo), expansion (MultiPolynomial.writeTo, or int -1),
+ * byte[infixBytes] infix (UTF-8), padding to 8 bytes
+ * </pre>
+ */
+final class OffHeapEquationStore implements EquationStore {
+    private static final int LENGTH = 0, LIVE = 4, ID = 8, TREE_HASH = 16, INFIX = 20, CODE = 24, CONSTANTS = 28,
+            SLOTS = 32, MAX_STACK = 36, HEADER = 40;
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+    // tree hash table entries: hash << 32 | id
+    private static final long EMPTY = 0L, DELETED = -1L;
+
+    // per-thread slot values and operand stack, as in CompiledExpression
+    private static final ThreadLocal<double[][]> SCRATCH = ThreadLocal.withInitial(() -> new double[][] {
+            new double[32], new double[32] });
+
+    private final int slabBytes;
+    // slab 0 is never used, so no address is 0; dropped slabs are nulled, never reused
+    private volatile ByteBuffer[] slabs = new ByteBuffer[1];
+    private int[] used = new int[1]; // bytes allocated per slab
+    private int[] dead = new int[1]; // bytes of dead records per slab
+    private int current; // slab taking new records, 0 before the first
+    private volatile AtomicLongArray[] pages = new AtomicLongArray[0]; // id -> address
+    private volatile long maxId;
+    private volatile int size;
+    private volatile long allocatedBytes, liveBytes;
+    private long[] hashes = new long[64];
+    private int hashesUsed; // live and deleted entries
+
+    OffHeapEquationStore(int slabBytes) {
+        if (slabBytes < 1024)
+            throw new IllegalArgumentException("Slab size must be at least 1KB");
+        this.slabBytes = slabBytes;
+    }
+
+    @Override
+    public synchronized void put(Equation e) {
+        long id = e.getId();
+        byte[] infix = e.getInfix().getBytes(StandardCharsets.UTF_8);
+        CompiledExpression program = e.getProgram();
+        CompactTree tree = e.getTree();
+        MultiPolynomial poly = e.getPolynomial();
+        int[] code = program.getCode();
+        double[] constants = program.getConstants();
+        String[] slots = program.getSlots();
+        long bytes = HEADER + 4L * code.length + 4L * slots.length + 8L * constants.length + tree.encodedSize()
+                + (poly == null ? 4 : poly.encodedSize()) + infix.length;
+        if (bytes > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Equation too large to store off-heap");
+        int length = ((int) bytes + 7) & ~7;
+
+        long address = allocate(length);
+        ByteBuffer buf = view(slabs[slabOf(address)], offsetOf(address));
+        buf.putInt(length).putInt(1).putLong(id).putInt(tree.hashCode()).putInt(infix.length)
+                .putInt(code.length).putInt(constants.length).putInt(slots.length).putInt(program.getMaxStack());
+        for (int ins : code)
+            buf.putInt(ins);
+        for (String s : slots)
+            buf.putInt(SymbolTable.id(s));
+        for (double c : constants)
+            buf.putDouble(c);
+        tree.writeTo(buf);
+        if (poly == null)
+            buf.putInt(-1);
+        else
+            poly.writeTo(buf);
+        buf.put(infix);
+        liveBytes += length;
+
+        long old = address(id);
+        if (old != 0) {
+            unhash(slab(old).getInt(offsetOf(old) + TREE_HASH), id);
+            size--;
+        }
+        setAddress(id, address); // publishes the record
+        size++;
+        hash(tree.hashCode(), id);
+        if (id > maxId)
+            maxId = id;
+        if (old != 0)
+            free(old);
+    }
+
+    @Override
+    public Equation get(long id) {
+        for (;;) {
+            long address = address(id);
+            if (address == 0)
+                return null;
+            ByteBuffer slab = slab(address);
+            if (slab != null)
+                return read(slab, offsetOf(address));
+        }
+    }
+
+    /** The infix alone, read from the end of the record without decoding the rest. */
+    @Override
+    public String infix(long id) {
+        for (;;) {
+            long address = address(id);
+            if (address == 0)
+                return null;
+            ByteBuffer slab = slab(address);
+            if (slab == null)
+                continue;
+            int off = offsetOf(address);
+            int at = treeStart(slab, off);
+            at += treeLength(slab, at);
+            int terms = slab.getInt(at);
+            at += terms < 0 ? 4 : 4 + terms * (4 * slab.getInt(off + SLOTS) + 8);
+            byte[] infix = new byte[slab.getInt(off + INFIX)];
+            slab.get(at, infix);
+            return new String(infix, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Evaluate in place: the program is interpreted straight from its record,
+     * with the same results and errors as {@link CompiledExpression#evaluate(Map)}.
+     */
+    double evaluate(long id, Map<String, Double> vars) {
+        for (;;) {
+            long address = address(id);
+            if (address == 0)
+                throw new EquationNotFoundException("Equation id " + id + " not found");
+            ByteBuffer slab = slab(address);
+            if (slab != null)
+                return run(slab, offsetOf(address), vars);
+        }
+    }
+
+    @Override
+    public synchronized Equation remove(long id) {
+        long address = address(id);
+        if (address == 0)
+            return null;
+        ByteBuffer slab = slab(address);
+        int off = offsetOf(address);
+        Equation removed = read(slab, off);
+        setAddress(id, 0);
+        size--;
+        unhash(slab.getInt(off + TREE_HASH), id);
+        free(address);
+        return removed;
+    }
+
+    @Override
+    public Iterable<Equation> after(long after) {
+        return () -> new Iterator<>() {
+            private long id = Math.max(0, after);
+            private Equation next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && id < maxId)
+                    next = get(++id);
+                return next != null;
+            }
+
+            @Override
+            public Equation next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Equation e = next;
+                next = null;
+                return e;
+            }
+        };
+    }
+
+    // records are not shared, so there is nothing to reuse
+    @Override
+    public Equation twin(CompactTree tree) {
+        return null;
+    }
+
+    @Override
+    public synchronized long firstWith(CompactTree tree) {
+        ByteBuffer encoded = ByteBuffer.allocate(tree.encodedSize()).order(ByteOrder.nativeOrder());
+        tree.writeTo(encoded);
+        encoded.flip();
+        int h = tree.hashCode();
+        long first = -1;
+        int mask = hashes.length - 1;
+        for (int i = bucket(h, mask); hashes[i] != EMPTY; i = (i + 1) & mask) {
+            long entry = hashes[i];
+            if (entry == DELETED || (int) (entry >>> 32) != h)
+                continue;
+            long id = entry & 0xFFFFFFFFL;
+            if ((first < 0 || id < first) && sameTree(address(id), encoded))
+                first = id;
+        }
+        return Math.max(first, 0);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // only the heap side: the index pages, the hash table and the slab table
+    @Override
+    public double bytesPerEquation() {
+        int n = size;
+        if (n == 0)
+            return 0.0;
+        long bytes = Footprint.references(pages.length) + Footprint.array(hashes.length, 8)
+                + Footprint.references(slabs.length) + (long) pages.length * (Footprint.object(1, 0)
+                        + Footprint.array(1 << PAGE_BITS, 8));
+        return (double) bytes / n;
+    }
+
+    /** Direct memory held by slabs, including dead records not yet compacted away. */
+    long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /** Bytes of live records. */
+    long liveBytes() {
+        return liveBytes;
+    }
+
+    private Equation read(ByteBuffer slab, int off) {
+        ByteBuffer buf = view(slab, off + HEADER);
+        int codeLength = slab.getInt(off + CODE), constantCount = slab.getInt(off + CONSTANTS);
+        int[] code = new int[codeLength];
+        for (int i = 0; i < codeLength; i++)
+            code[i] = buf.getInt();
+        String[] slots = new String[slab.getInt(off + SLOTS)];
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = SymbolTable.name(buf.getInt());
+        double[] constants = new double[constantCount];
+        for (int i = 0; i < constantCount; i++)
+            constants[i] = buf.getDouble();
+        CompactTree tree = CompactTree.readFrom(buf);
+        MultiPolynomial poly = null;
+        if (buf.getInt(buf.position()) >= 0)
+            poly = MultiPolynomial.readFrom(buf, slots);
+        else
+            buf.getInt();
+        byte[] infix = new byte[slab.getInt(off + INFIX)];
+        buf.get(infix);
+        Equation e = new Equation(slab.getLong(off + ID), new String(infix, StandardCharsets.UTF_8),
+                tree, new CompiledExpression(code, constants, slots, slab.getInt(off + MAX_STACK)));
+        e.setPolynomial(poly);
+        return e;
+    }
+
+    private static double run(ByteBuffer slab, int off, Map<String, Double> vars) {
+        int codeLength = slab.getInt(off + CODE), slotCount = slab.getInt(off + SLOTS);
+        int maxStack = slab.getInt(off + MAX_STACK);
+        int code = off + HEADER, slotIds = code + 4 * codeLength, constants = slotIds + 4 * slotCount;
+        double[][] scratch = SCRATCH.get();
+        if (scratch[0].length < slotCount)
+            scratch[0] = new double[slotCount];
+        if (scratch[1].length < maxStack)
+            scratch[1] = new double[maxStack];
+        double[] values = scratch[0], stack = scratch[1];
+        for (int i = 0; i < slotCount; i++) {
+            String name = SymbolTable.name(slab.getInt(slotIds + 4 * i));
+            Double v = vars.get(name);
+            if (v == null)
+                throw new IllegalArgumentException("Missing variable value for '" + name + "'");
+            values[i] = v;
+        }
+        int sp = 0;
+        for (int pc = 0; pc < codeLength; pc++) {
+            int ins = slab.getInt(code + 4 * pc);
+            switch (ins & CompiledExpression.OP_MASK) {
+                case CompiledExpression.CONST ->
+                    stack[sp++] = slab.getDouble(constants + 8 * (ins >>> CompiledExpression.OP_BITS));
+                case CompiledExpression.LOAD -> stack[sp++] = values[ins >>> CompiledExpression.OP_BITS];
+                case CompiledExpression.ADD -> {
+                    sp--;
+                    stack[sp - 1] += stack[sp];
+                }
+                case CompiledExpression.SUB -> {
+                    sp--;
+                    stack[sp - 1] -= stack[sp];
+                }
+                case CompiledExpression.MUL -> {
+                    sp--;
+                    stack[sp - 1] *= stack[sp];
+                }
+                case CompiledExpression.DIV -> {
+                    sp--;
+                    stack[sp - 1] = CompiledExpression.divide(stack[sp - 1], stack[sp]);
+                }
+                case CompiledExpression.POW -> {
+                    sp--;
+                    stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]);
+                }
+                default -> throw new IllegalStateException("Bad opcode: " + (ins & CompiledExpression.OP_MASK));
+            }
+        }
+        return stack[0];
+    }
+
+    // whether the record at address holds exactly the encoded tree
+    private boolean sameTree(long address, ByteBuffer encoded) {
+        if (address == 0)
+            return false;
+        ByteBuffer slab = slab(address);
+        int start = treeStart(slab, offsetOf(address));
+        int length = treeLength(slab, start);
+        return length == encoded.remaining() && slab.slice(start, length).equals(encoded);
+    }
+
+    private static int treeStart(ByteBuffer slab, int off) {
+        return off + HEADER + 4 * slab.getInt(off + CODE) + 4 * slab.getInt(off + SLOTS)
+                + 8 * slab.getInt(off + CONSTANTS);
+    }
+
+    // bytes of the tree written by CompactTree.writeTo at start
+    private static int treeLength(ByteBuffer slab, int start) {
+        int nodes = slab.getInt(start), constants = slab.getInt(start + 4);
+        return 9 + nodes * 5 + constants * 8 + (slab.get(start + 8) != 0 ? constants * 4 : 0);
+    }
+
+    // --- slabs, under the lock
+
+    private long allocate(int length) {
+        int full = 0;
+        if (current == 0 || used[current] + length > slabs[current].capacity()) {
+            full = current;
+            current = newSlab(Math.max(slabBytes, length));
+        }
+        long address = (long) current << 32 | used[current];
+        used[current] += length;
+        // free() leaves the current slab alone, so the slab just filled is checked as it is left behind
+        if (full != 0 && 2L * dead[full] >= used[full])
+            compact(full);
+        return address;
+    }
+
+    private int newSlab(int capacity) {
+        ByteBuffer[] next = Arrays.copyOf(slabs, slabs.length + 1);
+        next[slabs.length] = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        used = Arrays.copyOf(used, next.length);
+        dead = Arrays.copyOf(dead, next.length);
+        allocatedBytes += capacity;
+        slabs = next;
+        return next.length - 1;
+    }
+
+    private void free(long address) {
+        int s = slabOf(address), off = offsetOf(address);
+        ByteBuffer slab = slabs[s];
+        int length = slab.getInt(off + LENGTH);
+        slab.putInt(off + LIVE, 0);
+        dead[s] += length;
+        liveBytes -= length;
+        if (s != current && 2L * dead[s] >= used[s])
+            compact(s);
+    }
+
+    // Copy the slab's live records forward, repoint their ids and drop the slab.
+    private void compact(int s) {
+        ByteBuffer from = slabs[s];
+        for (int off = 0; off < used[s]; off += from.getInt(off + LENGTH)) {
+            if (from.getInt(off + LIVE) == 0)
+                continue;
+            int length = from.getInt(off + LENGTH);
+            long to = allocate(length);
+            slabs[slabOf(to)].put(offsetOf(to), from, off, length);
+            setAddress(from.getLong(off + ID), to);
+        }
+        ByteBuffer[] next = slabs.clone();
+        next[s] = null; // readers that miss it re-read the index, which already points at the copies
+        allocatedBytes -= from.capacity();
+        used[s] = 0;
+        dead[s] = 0;
+        slabs = next;
+    }
+
+    private ByteBuffer slab(long address) {
+        return slabs[slabOf(address)];
+    }
+
+    private static int slabOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private static ByteBuffer view(ByteBuffer slab, int position) {
+        return slab.duplicate().order(ByteOrder.nativeOrder()).position(position);
+    }
+
+    // --- id index
+
+    private long address(long id) {
+        AtomicLongArray[] p = pages;
+        long page = id >>> PAGE_BITS;
+        return id <= 0 || page >= p.length ? 0 : p[(int) page].get((int) id & PAGE_MASK);
+    }
+
+    private void setAddress(long id, long address) {
+        int page = (int) (id >>> PAGE_BITS);
+        if (page >= pages.length) {
+            AtomicLongArray[] next = Arrays.copyOf(pages, page + 1);
+            for (int i = pages.length; i < next.length; i++)
+                next[i] = new AtomicLongArray(1 << PAGE_BITS);
+            pages = next;
+        }
+        pages[page].set((int) id & PAGE_MASK, address);
+    }
+
+    // --- tree hashes, open addressing with linear probing
+
+    private void hash(int h, long id) {
+        if (2 * (hashesUsed + 1) > hashes.length)
+            rehash();
+        int mask = hashes.length - 1;
+        int i = bucket(h, mask);
+        while (hashes[i] != EMPTY && hashes[i] != DELETED)
+            i = (i + 1) & mask;
+        if (hashes[i] == EMPTY)
+            hashesUsed++;
+        hashes[i] = (long) h << 32 | id;
+    }
+
+    private void unhash(int h, long id) {
+        long entry = (long) h << 32 | id;
+        int mask = hashes.length - 1;
+        for (int i = bucket(h, mask); hashes[i] != EMPTY; i = (i + 1) & mask) {
+            if (hashes[i] == entry) {
+                hashes[i] = DELETED;
+                return;
+            }
+        }
+    }
+
+    // sized for the live entries, dropping the deleted ones
+    private void rehash() {
+        long[] old = hashes;
+        int capacity = 64;
+        while (capacity < 4L * (size + 1))
+            capacity <<= 1;
+        hashes = new long[capacity];
+        hashesUsed = 0;
+        for (long entry : old)
+            if (entry != EMPTY && entry != DELETED)
+                hash((int) (entry >>> 32), entry & 0xFFFFFFFFL);
+    }
+
+    private static int bucket(int h, int mask) {
+        return (int) ((h * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
@@ -0,0 +1,108 @@
+package com.algebra.algebra_solver.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls: the first caller for a key computes,
+ * and callers arriving while it runs wait for its result, or rethrow its
+ * exception, instead of computing again. Nothing outlives the computation,
+ * so a call arriving after it finished computes afresh.
+ * <p>
+ * A waiter gives up after the configured max wait and computes on its own
+ * thread; a max wait of zero disables coalescing. Waiters share the leader's
+ * result object, so callers must treat it as read-only.
+ */
+@Component
+public class SingleFlight {
+    private final ConcurrentHashMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final long maxWaitNanos;
+    private final Counter shared;
+    private final Counter timedOut;
+
+    public SingleFlight() {
+        this(Duration.ofSeconds(1), new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public SingleFlight(@Value("${equations.coalesce.max-wait:1s}") Duration maxWait, MeterRegistry registry) {
+        this.maxWaitNanos = maxWait.toNanos();
+        this.shared = coalesced(registry, "shared");
+        this.timedOut = coalesced(registry, "timeout");
+    }
+
+    /** The value of {@code compute}, or of an identical call for {@code key} already running. */
+    @SuppressWarnings("unchecked")
+    public <T> T run(Object key, Supplier<T> compute) {
+        if (maxWaitNanos <= 0)
+            return compute.get();
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+        if (leader == null)
+            return lead(key, mine, compute);
+        try {
+            T value = (T) leader.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+            shared.increment();
+            return value;
+        } catch (ExecutionException ex) {
+            shared.increment();
+            throw rethrow(ex.getCause());
+        } catch (TimeoutException ex) {
+            timedOut.increment();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return compute.get();
+    }
+
+    /** Calls currently being computed. */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /** Callers waiting on the call running for {@code key}. */
+    int waiters(Object key) {
+        CompletableFuture<Object> leader = inFlight.get(key);
+        return leader == null ? 0 : leader.getNumberOfDependents();
+    }
+
+    private <T> T lead(Object key, CompletableFuture<Object> mine, Supplier<T> compute) {
+        try {
+            T value = compute.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof Error error)
+            throw error;
+        if (cause instanceof RuntimeException runtime)
+            return runtime;
+        return new IllegalStateException(cause);
+    }
+
+    private static Counter coalesced(MeterRegistry registry, String outcome) {
+        return Counter.builder("equations.coalesced")
+                .description("Calls answered by an identical call already in flight, or that stopped waiting for it")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,174 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.model.Equation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of solve results keyed by (equation id, variable, knowns).
+ * Knowns are canonicalised to the values of the equation's other variables in
+ * name order, so extra or reordered entries hit the same key. Entries expire
+ * after the configured TTL and are dropped when their equation is deleted.
+ * <p>
+ * The cache is split into independently locked LRU stripes to keep lookups
+ * from serialising on one lock. Failed solves are never cached.
+ */
+@Component
+public class SolveCache {
+    private static final int STRIPES = 16;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SolveCache() {
+        this(10_000, Duration.ofMinutes(10));
+    }
+
+    @Autowired
+    public SolveCache(@Value("${equations.solve-cache.max-size:10000}") int maxSize,
+            @Value("${equations.solve-cache.ttl:10m}") Duration ttl) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlNanos = ttl.toNanos();
+        int perStripe = (this.maxSize + STRIPES - 1) / STRIPES;
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe(perStripe);
+    }
+
+    public EquationService.SolveResult get(Equation e, String variable, Map<String, Double> knowns,
+            Supplier<EquationService.SolveResult> compute) {
+        Key key = maxSize == 0 ? null : key(e, variable, knowns);
+        if (key == null)
+            return compute.get(); // disabled, or a known is missing and the solve will fail anyway
+        Stripe stripe = stripes[(key.hash & 0x7fffffff) % STRIPES];
+        long now = System.nanoTime();
+        synchronized (stripe) {
+            Entry hit = stripe.get(key);
+            if (hit != null && now - hit.createdNanos < ttlNanos) {
+                hits.increment();
+                return hit.result.copy();
+            }
+            if (hit != null)
+                stripe.remove(key);
+        }
+        misses.increment();
+        EquationService.SolveResult result = compute.get();
+        synchronized (stripe) {
+            stripe.put(key, new Entry(result.copy(), now));
+        }
+        return result;
+    }
+
+    /** Drop every cached result for an equation. */
+    public void invalidate(long equationId) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.keySet().removeIf(k -> k.id == equationId);
+            }
+        }
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                s.size += stripe.size();
+            }
+        }
+        s.maxSize = maxSize;
+        s.hits = hits.sum();
+        s.misses = misses.sum();
+        s.evictions = evictions.sum();
+        long total = s.hits + s.misses;
+        s.hitRate = total == 0 ? 0.0 : (double) s.hits / total;
+        return s;
+    }
+
+    public static class Stats {
+        public int size;
+        public int maxSize;
+        public long hits;
+        public long misses;
+        public long evictions;
+        public double hitRate;
+    }
+
+    private static Key key(Equation e, String variable, Map<String, Double> knowns) {
+        Set<String> vars = e.getVariables();
+        double[] values = new double[vars.size()];
+        int n = 0;
+        for (String v : vars) { // TreeSet: name order
+            if (v.equals(variable))
+                continue;
+            Double value = knowns.get(v);
+            if (value == null)
+                return null;
+            values[n++] = value;
+        }
+        return new Key(e.getId(), variable, n == values.length ? values : Arrays.copyOf(values, n));
+    }
+
+    private static final class Key {
+        final long id;
+        final String variable;
+        final double[] knowns;
+        final int hash;
+
+        Key(long id, String variable, double[] knowns) {
+            this.id = id;
+            this.variable = variable;
+            this.knowns = knowns;
+            this.hash = (Long.hashCode(id) * 31 + variable.hashCode()) * 31 + Arrays.hashCode(knowns);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && hash == k.hash && id == k.id && variable.equals(k.variable)
+                    && Arrays.equals(knowns, k.knowns);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        final EquationService.SolveResult result;
+        final long createdNanos;
+
+        Entry(EquationService.SolveResult result, long createdNanos) {
+            this.result = result;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    private final class Stripe extends LinkedHashMap<Key, Entry> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() <= capacity)
+                return false;
+            evictions.increment();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.algebra.algebra_solver.service;
+
+/**
+ * How {@link EquationService#solve(String, String, java.util.Map, SolveOptions)}
+ * treats equations the exact solver cannot answer with real roots:
+ * {@link #exact()} fails, {@link #auto()} falls back to the numeric solver
+ * for non-polynomial equations, and {@link #complex()} returns the complex
+ * roots of a polynomial without real ones instead of failing with
+ * "No real roots". Immutable; equal options compare equal.
+ */
+public final class SolveOptions {
+    private static final SolveOptions EXACT = new SolveOptions(false, false);
+    private static final SolveOptions AUTO = new SolveOptions(true, false);
+
+    private final boolean numericFallback;
+    private final boolean complex;
+
+    private SolveOptions(boolean numericFallback, boolean complex) {
+        this.numericFallback = numericFallback;
+        this.complex = complex;
+    }
+
+    public static SolveOptions exact() {
+        return EXACT;
+    }
+
+    public static SolveOptions auto() {
+        return AUTO;
+    }
+
+    /** These options, also accepting complex roots. */
+    public SolveOptions complex() {
+        return complex ? this : new SolveOptions(numericFallback, true);
+    }
+
+    public boolean numericFallback() {
+        return numericFallback;
+    }
+
+    public boolean complexRoots() {
+        return complex;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SolveOptions other && numericFallback == other.numericFallback
+                && complex == other.complex;
+    }
+
+    @Override
+    public int hashCode() {
+        return (numericFallback ? 2 : 0) | (complex ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return (numericFallback ? "auto" : "exact") + (complex ? "+complex" : "");
+    }
+}
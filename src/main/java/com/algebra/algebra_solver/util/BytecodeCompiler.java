@@ -0,0 +1,101 @@
+package com.algebra.algebra_solver.util;
+
+import com.algebra.algebra_solver.model.CompiledExpression;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Second tier for hot equations: translates a {@link CompiledExpression} into
+ * a hidden class whose {@code eval(double[])} is the program as straight-line
+ * bytecode, which C2 compiles to plain arithmetic.
+ * <p>
+ * The classes are defined without {@code ClassOption.STRONG}, so each one is
+ * unloaded once the program that holds its kernel is no longer referenced,
+ * e.g. after its equation is deleted.
+ */
+public final class BytecodeCompiler {
+    /**
+     * Larger programs stay interpreted. At up to about five bytes per
+     * instruction this keeps {@code eval} under HotSpot's 8000-byte limit for
+     * JIT-compiling a method, past which the kernel would run slower than the
+     * interpreter loop.
+     */
+    public static final int MAX_INSTRUCTIONS = 1500;
+
+    private static final String KERNEL = Type.getInternalName(CompiledExpression.Kernel.class);
+    private static final String PROGRAM = Type.getInternalName(CompiledExpression.class);
+    private static final String NAME = BytecodeCompiler.class.getPackageName().replace('.', '/') + "/JitKernel";
+
+    private BytecodeCompiler() {
+    }
+
+    /** @return the kernel, or null when the program is too large to compile */
+    public static CompiledExpression.Kernel compile(CompiledExpression program) {
+        int[] code = program.getCode();
+        if (code.length > MAX_INSTRUCTIONS)
+            return null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(generate(program), true);
+            return (CompiledExpression.Kernel) lookup.lookupClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Could not define kernel class", ex);
+        }
+    }
+
+    private static byte[] generate(CompiledExpression program) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, NAME, null,
+                "java/lang/Object", new String[] { KERNEL });
+
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "eval", "([D)D", null, null);
+        mv.visitCode();
+        double[] constants = program.getConstants();
+        for (int ins : program.getCode()) {
+            int operand = ins >>> CompiledExpression.OP_BITS;
+            switch (ins & CompiledExpression.OP_MASK) {
+                case CompiledExpression.CONST -> mv.visitLdcInsn(constants[operand]);
+                case CompiledExpression.LOAD -> {
+                    mv.visitVarInsn(Opcodes.ALOAD, 1);
+                    pushInt(mv, operand);
+                    mv.visitInsn(Opcodes.DALOAD);
+                }
+                case CompiledExpression.ADD -> mv.visitInsn(Opcodes.DADD);
+                case CompiledExpression.SUB -> mv.visitInsn(Opcodes.DSUB);
+                case CompiledExpression.MUL -> mv.visitInsn(Opcodes.DMUL);
+                case CompiledExpression.DIV ->
+                    mv.visitMethodInsn(Opcodes.INVOKESTATIC, PROGRAM, "divide", "(DD)D", false);
+                case CompiledExpression.POW ->
+                    mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "pow", "(DD)D", false);
+                default -> throw new IllegalStateException("Bad opcode: " + (ins & CompiledExpression.OP_MASK));
+            }
+        }
+        mv.visitInsn(Opcodes.DRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void pushInt(MethodVisitor mv, int v) {
+        if (v <= 5)
+            mv.visitInsn(Opcodes.ICONST_0 + v);
+        else if (v <= Byte.MAX_VALUE)
+            mv.visitIntInsn(Opcodes.BIPUSH, v);
+        else if (v <= Short.MAX_VALUE)
+            mv.visitIntInsn(Opcodes.SIPUSH, v);
+        else
+            mv.visitLdcInsn(v);
+    }
+}
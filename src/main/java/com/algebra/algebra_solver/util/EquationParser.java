@@ -5,7 +5,9 @@ import com.algebra.algebra_solver.model.Node;
 import com.algebra.algebra_solver.model.OperandNode;
 import com.algebra.algebra_solver.model.OperatorNode;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 public final class EquationParser {
 
@@ -16,30 +18,37 @@ public final class EquationParser {
     public static Node parseToTree(String raw) {
         if (raw == null || raw.trim().isEmpty())
             throw new InvalidEquationException("Equation cannot be empty");
-        List<Token> tokens = tokenize(raw);
-        tokens = insertImplicitMultiplication(tokens);
-        List<Token> post = infixToPostfix(tokens);
-        return buildTree(post);
+        return new Parser(raw).parse();
     }
 
-    // Token representation
-    private enum Type {
-        NUMBER, IDENT, OP, LPAREN, RPAREN
+    /**
+     * Variable names in order of first occurrence in {@code text}, which may be
+     * raw input or rendered infix. Cheaper than a parse; used to keep slot
+     * order following the text once the tree has been put in canonical form.
+     */
+    public static Set<String> variablesOf(String text) {
+        Set<String> vars = new LinkedHashSet<>();
+        int n = text.length();
+        for (int i = 0; i < n;) {
+            char c = text.charAt(i);
+            if (isIdentStart(c)) {
+                int j = i + 1;
+                while (j < n && Character.isLetterOrDigit(text.charAt(j)))
+                    j++;
+                vars.add(text.substring(i, j));
+                i = j;
+            } else {
+                i++;
+            }
+        }
+        return vars;
     }
 
-    private static class Token {
-        final Type type;
-        final String text;
-
-        Token(Type type, String text) {
-            this.type = type;
-            this.text = text;
-        }
+    // Kinds of the previous token, used for unary minus and implicit
+    // multiplication decisions.
+    private static final int NONE = 0, NUMBER = 1, IDENT = 2, OP = 3, LPAREN = 4, RPAREN = 5;
 
-        public String toString() {
-            return type + ":" + text;
-        }
-    }
+    private static final String PLUS = "+", MINUS = "-", TIMES = "*", DIVIDE = "/", POWER = "^";
 
     private static boolean isIdentStart(char c) {
         return Character.isLetter(c);
@@ -49,188 +58,206 @@ public final class EquationParser {
         return Character.isDigit(c);
     }
 
-    private static List<Token> tokenize(String s) {
-        List<Token> out = new ArrayList<>();
-        int i = 0, n = s.length();
-        while (i < n) {
-            char c = s.charAt(i);
-            if (Character.isWhitespace(c)) {
-                i++;
-                continue;
-            }
-            if (isDigit(c) || (c == '.' && i + 1 < n && isDigit(s.charAt(i + 1)))) {
-                int j = i + 1;
-                boolean dot = (c == '.');
-                while (j < n) {
-                    char d = s.charAt(j);
-                    if (isDigit(d)) {
-                        j++;
+    private static int prec(char op) {
+        return switch (op) {
+            case '^' -> 3;
+            case '*', '/' -> 2;
+            case '+', '-' -> 1;
+            default -> -1;
+        };
+    }
+
+    private static boolean rightAssoc(char op) {
+        return op == '^';
+    }
+
+    private static String opText(char op) {
+        return switch (op) {
+            case '+' -> PLUS;
+            case '-' -> MINUS;
+            case '*' -> TIMES;
+            case '/' -> DIVIDE;
+            default -> POWER;
+        };
+    }
+
+    /**
+     * Single left-to-right pass: lexemes are read straight from the string,
+     * implicit multiplication is inserted between adjacent operands, and the
+     * shunting-yard reductions build tree nodes directly instead of going
+     * through token and postfix lists.
+     * <p>
+     * Errors are reported with the same precedence as a full tokenize pass
+     * followed by a postfix conversion and tree build: an invalid character
+     * anywhere wins, then mismatched parentheses, then the first missing
+     * operand, then a malformed result. Structural errors are therefore held
+     * back until the end of the input has been scanned.
+     */
+    private static final class Parser {
+        private final String s;
+        private final int n;
+        private int prev = NONE;
+
+        private char[] ops = new char[16];
+        private int opTop;
+        private Node[] nodes = new Node[16];
+        private int nodeTop;
+
+        private boolean mismatched;
+        private String buildError;
+
+        Parser(String s) {
+            this.s = s;
+            this.n = s.length();
+        }
+
+        Node parse() {
+            int i = 0;
+            while (i < n) {
+                char c = s.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                }
+                if (isDigit(c) || (c == '.' && i + 1 < n && isDigit(s.charAt(i + 1)))) {
+                    int j = scanNumber(i, c == '.');
+                    operand(NUMBER, i, j);
+                    i = j;
+                    continue;
+                }
+                // unary minus before number: capture -3
+                if (c == '-' && (prev == NONE || prev == OP || prev == LPAREN)) {
+                    int j = i + 1;
+                    if (j < n && (isDigit(s.charAt(j)) || (s.charAt(j) == '.' && j + 1 < n && isDigit(s.charAt(j + 1))))) {
+                        int k = scanNumber(j, s.charAt(j) == '.');
+                        operand(NUMBER, i, k);
+                        i = k;
                         continue;
                     }
-                    if (d == '.' && !dot) {
-                        dot = true;
+                }
+                if (isIdentStart(c)) {
+                    int j = i + 1;
+                    while (j < n && (Character.isLetterOrDigit(s.charAt(j))))
                         j++;
-                        continue;
-                    }
-                    break;
+                    operand(IDENT, i, j);
+                    i = j;
+                    continue;
                 }
-                out.add(new Token(Type.NUMBER, s.substring(i, j)));
-                i = j;
-                continue;
-            }
-            // unary minus before number: capture -3
-            if (c == '-' && (out.isEmpty() || out.get(out.size() - 1).type == Type.OP
-                    || out.get(out.size() - 1).type == Type.LPAREN)) {
-                int j = i + 1;
-                if (j < n && (isDigit(s.charAt(j)) || (s.charAt(j) == '.' && j + 1 < n && isDigit(s.charAt(j + 1))))) {
-                    int k = j + 1;
-                    boolean dot = (s.charAt(j) == '.');
-                    while (k < n) {
-                        char d = s.charAt(k);
-                        if (isDigit(d)) {
-                            k++;
-                            continue;
-                        }
-                        if (d == '.' && !dot) {
-                            dot = true;
-                            k++;
-                            continue;
-                        }
-                        break;
+                switch (c) {
+                    case '+', '-', '*', '/', '^' -> {
+                        operator(c);
+                        prev = OP;
                     }
-                    out.add(new Token(Type.NUMBER, s.substring(i, k)));
-                    i = k;
-                    continue;
+                    case '(' -> {
+                        implicitMultiply();
+                        pushOp('(');
+                        prev = LPAREN;
+                    }
+                    case ')' -> {
+                        closeParen();
+                        prev = RPAREN;
+                    }
+                    default -> throw new InvalidEquationException("Invalid character: " + c);
                 }
+                i++;
             }
-            if (isIdentStart(c)) {
-                int j = i + 1;
-                while (j < n && (Character.isLetterOrDigit(s.charAt(j))))
-                    j++;
-                out.add(new Token(Type.IDENT, s.substring(i, j)));
-                i = j;
-                continue;
-            }
-            switch (c) {
-                case '+':
-                case '-':
-                case '*':
-                case '/':
-                case '^':
-                    out.add(new Token(Type.OP, String.valueOf(c)));
-                    i++;
-                    break;
-                case '(':
-                    out.add(new Token(Type.LPAREN, "("));
-                    i++;
-                    break;
-                case ')':
-                    out.add(new Token(Type.RPAREN, ")"));
-                    i++;
-                    break;
-                default:
-                    throw new InvalidEquationException("Invalid character: " + c);
+            while (opTop > 0 && !mismatched) {
+                char op = ops[--opTop];
+                if (op == '(')
+                    mismatched = true;
+                else
+                    reduce(op);
             }
+            if (mismatched)
+                throw new InvalidEquationException("Mismatched parentheses");
+            if (buildError != null)
+                throw new InvalidEquationException(buildError);
+            if (nodeTop != 1)
+                throw new InvalidEquationException("Malformed expression");
+            return nodes[0];
         }
-        return out;
-    }
 
-    // implicit multiplication 3x -> 3 * x, 2(x+1) -> 2*(x+1), x(y+1) -> x*(y+1), )(
-    // -> )*( etc.
-    private static List<Token> insertImplicitMultiplication(List<Token> t) {
-        if (t.isEmpty())
-            return t;
-        List<Token> out = new ArrayList<>();
-        for (int i = 0; i < t.size(); i++) {
-            out.add(t.get(i));
-            if (i + 1 < t.size()) {
-                Token a = t.get(i), b = t.get(i + 1);
-                boolean leftAtomic = a.type == Type.NUMBER || a.type == Type.IDENT || a.type == Type.RPAREN;
-                boolean rightAtomic = b.type == Type.NUMBER || b.type == Type.IDENT || b.type == Type.LPAREN;
-                if (leftAtomic && rightAtomic)
-                    out.add(new Token(Type.OP, "*"));
+        // end index of a number starting at i (digits with at most one dot)
+        private int scanNumber(int i, boolean dot) {
+            int j = i + 1;
+            while (j < n) {
+                char d = s.charAt(j);
+                if (isDigit(d)) {
+                    j++;
+                    continue;
+                }
+                if (d == '.' && !dot) {
+                    dot = true;
+                    j++;
+                    continue;
+                }
+                break;
             }
+            return j;
         }
-        return out;
-    }
 
-    // shunting-yard
-    private static int prec(String op) {
-        return switch (op) {
-            case "^" -> 3;
-            case "*", "/" -> 2;
-            case "+", "-" -> 1;
-            default -> -1;
-        };
-    }
+        // implicit multiplication 3x -> 3 * x, 2(x+1) -> 2*(x+1), x(y+1) -> x*(y+1),
+        // )( -> )*( etc.
+        private void implicitMultiply() {
+            if (prev == NUMBER || prev == IDENT || prev == RPAREN)
+                operator('*');
+        }
 
-    private static boolean rightAssoc(String op) {
-        return "^".equals(op);
-    }
+        private void operand(int kind, int from, int to) {
+            implicitMultiply();
+            prev = kind;
+            if (mismatched || buildError != null)
+                return;
+            if (nodeTop == nodes.length)
+                nodes = Arrays.copyOf(nodes, nodeTop * 2);
+            nodes[nodeTop++] = new OperandNode(s.substring(from, to));
+        }
 
-    private static List<Token> infixToPostfix(List<Token> tokens) {
-        List<Token> out = new ArrayList<>();
-        Deque<Token> stack = new ArrayDeque<>();
-        for (Token tk : tokens) {
-            switch (tk.type) {
-                case NUMBER:
-                case IDENT:
-                    out.add(tk);
-                    break;
-                case OP:
-                    while (!stack.isEmpty() && stack.peek().type == Type.OP) {
-                        String top = stack.peek().text;
-                        if ((rightAssoc(tk.text) && prec(tk.text) < prec(top)) ||
-                                (!rightAssoc(tk.text) && prec(tk.text) <= prec(top))) {
-                            out.add(stack.pop());
-                        } else
-                            break;
-                    }
-                    stack.push(tk);
-                    break;
-                case LPAREN:
-                    stack.push(tk);
-                    break;
-                case RPAREN:
-                    while (!stack.isEmpty() && stack.peek().type != Type.LPAREN)
-                        out.add(stack.pop());
-                    if (stack.isEmpty() || stack.pop().type != Type.LPAREN)
-                        throw new InvalidEquationException("Mismatched parentheses");
+        private void operator(char op) {
+            if (mismatched)
+                return;
+            while (opTop > 0 && ops[opTop - 1] != '(') {
+                char top = ops[opTop - 1];
+                if ((rightAssoc(op) && prec(op) < prec(top)) ||
+                        (!rightAssoc(op) && prec(op) <= prec(top))) {
+                    opTop--;
+                    reduce(top);
+                } else
                     break;
             }
+            pushOp(op);
         }
-        while (!stack.isEmpty()) {
-            Token t = stack.pop();
-            if (t.type == Type.LPAREN || t.type == Type.RPAREN)
-                throw new InvalidEquationException("Mismatched parentheses");
-            out.add(t);
+
+        private void closeParen() {
+            if (mismatched)
+                return;
+            while (opTop > 0 && ops[opTop - 1] != '(')
+                reduce(ops[--opTop]);
+            if (opTop == 0) {
+                mismatched = true;
+                return;
+            }
+            opTop--;
         }
-        return out;
-    }
 
-    // build expression tree from postfix
-    private static Node buildTree(List<Token> post) {
-        Deque<Node> st = new ArrayDeque<>();
-        for (Token tk : post) {
-            switch (tk.type) {
-                case NUMBER:
-                    st.push(new OperandNode(tk.text));
-                    break;
-                case IDENT:
-                    st.push(new OperandNode(tk.text));
-                    break;
-                case OP:
-                    if (st.size() < 2)
-                        throw new InvalidEquationException("Missing operands for operator " + tk.text);
-                    Node r = st.pop(), l = st.pop();
-                    st.push(new OperatorNode(tk.text, l, r));
-                    break;
-                default:
-                    throw new InvalidEquationException("Unexpected token in postfix: " + tk);
+        private void pushOp(char op) {
+            if (mismatched)
+                return;
+            if (opTop == ops.length)
+                ops = Arrays.copyOf(ops, opTop * 2);
+            ops[opTop++] = op;
+        }
+
+        // build the node for an operator leaving the stack (postfix order)
+        private void reduce(char op) {
+            if (buildError != null)
+                return;
+            if (nodeTop < 2) {
+                buildError = "Missing operands for operator " + op;
+                return;
             }
+            Node r = nodes[--nodeTop], l = nodes[--nodeTop];
+            nodes[nodeTop++] = new OperatorNode(opText(op), l, r);
         }
-        if (st.size() != 1)
-            throw new InvalidEquationException("Malformed expression");
-        return st.pop();
     }
 }
@@ -0,0 +1,82 @@
+package com.algebra.algebra_solver.util;
+
+import com.algebra.algebra_solver.model.CompiledExpression;
+import com.algebra.algebra_solver.model.Node;
+import com.algebra.algebra_solver.model.OperandNode;
+import com.algebra.algebra_solver.model.OperatorNode;
+
+import java.util.*;
+
+/**
+ * Compile an expression tree into a {@link CompiledExpression}: postfix
+ * opcodes, a constant pool and variable slots in first-occurrence order.
+ */
+public final class ExpressionCompiler {
+
+    private ExpressionCompiler() {
+    }
+
+    public static CompiledExpression compile(Node root) {
+        return compile(root, List.of());
+    }
+
+    /**
+     * Compile with the variables in {@code slotOrder} taking the first slots in
+     * that order; any others follow in first-occurrence order.
+     */
+    public static CompiledExpression compile(Node root, Collection<String> slotOrder) {
+        Builder b = new Builder();
+        for (String v : slotOrder)
+            b.slots.putIfAbsent(v, b.slots.size());
+        b.emit(root);
+        return new CompiledExpression(Arrays.copyOf(b.code, b.size), Arrays.copyOf(b.constants, b.constCount),
+                b.slots.keySet().toArray(new String[0]), b.maxStack);
+    }
+
+    static int opcodeOf(String op) {
+        return switch (op) {
+            case "+" -> CompiledExpression.ADD;
+            case "-" -> CompiledExpression.SUB;
+            case "*" -> CompiledExpression.MUL;
+            case "/" -> CompiledExpression.DIV;
+            case "^" -> CompiledExpression.POW;
+            default -> throw new IllegalArgumentException("Unknown operator: " + op);
+        };
+    }
+
+    private static final class Builder {
+        int[] code = new int[16];
+        int size;
+        double[] constants = new double[8];
+        int constCount;
+        final Map<String, Integer> slots = new LinkedHashMap<>();
+        int depth, maxStack;
+
+        void emit(Node root) {
+            root.fold(o -> {
+                if (o.isNumber()) {
+                    if (constCount == constants.length)
+                        constants = Arrays.copyOf(constants, constCount * 2);
+                    constants[constCount] = o.getValue();
+                    push(constCount++ << CompiledExpression.OP_BITS | CompiledExpression.CONST);
+                } else {
+                    int slot = slots.computeIfAbsent(o.getToken(), k -> slots.size());
+                    push(slot << CompiledExpression.OP_BITS | CompiledExpression.LOAD);
+                }
+                if (++depth > maxStack)
+                    maxStack = depth;
+                return null;
+            }, (op, l, r) -> {
+                push(opcodeOf(op.getOp()));
+                depth--;
+                return null;
+            });
+        }
+
+        void push(int ins) {
+            if (size == code.length)
+                code = Arrays.copyOf(code, size * 2);
+            code[size++] = ins;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.algebra.algebra_solver.util;
+
+import com.algebra.algebra_solver.model.Node;
+import com.algebra.algebra_solver.model.OperandNode;
+import com.algebra.algebra_solver.model.OperatorNode;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Rewrite pass run on a tree before it is stored: constant folding, identity
+ * and annihilator elimination ({@code x*1}, {@code x+0}, {@code x/1},
+ * {@code x^1}, {@code x^0}, {@code x*0}) and merging of like terms in sums.
+ * <p>
+ * Rewrites never hide an error evaluation or solving would report: division
+ * by (near) zero and non-finite results are left unfolded, {@code x*0} and
+ * {@code x^0} are only dropped when {@code x} cannot divide or raise to a
+ * variable or negative power, and like terms whose coefficients cancel are
+ * kept, so the formal degree the solver reports is unchanged.
+ * <p>
+ * Input must be interned by the same {@link NodeInterner}; every node built
+ * here is interned too, so equal subtrees are found by identity.
+ */
+public final class ExpressionSimplifier {
+    private final NodeInterner interner;
+
+    public ExpressionSimplifier(NodeInterner interner) {
+        this.interner = interner;
+    }
+
+    public Node simplify(Node root) {
+        // Explicit stacks instead of recursion: tasks holds nodes still to
+        // simplify and frames that finish an operator or a sum once their
+        // operands' results are on the results stack.
+        Deque<Object> tasks = new ArrayDeque<>();
+        Deque<Node> results = new ArrayDeque<>();
+        tasks.push(root);
+        while (!tasks.isEmpty()) {
+            Object task = tasks.pop();
+            if (task instanceof Sum sum) {
+                Node[] operands = new Node[sum.signs.length];
+                for (int i = operands.length - 1; i >= 0; i--)
+                    operands[i] = results.pop();
+                List<Term> terms = new ArrayList<>();
+                // operands that simplify to a sum are spliced into the chain
+                for (int i = 0; i < operands.length; i++)
+                    flatten(operands[i], sum.signs[i], terms);
+                results.push(sum(terms));
+            } else if (task instanceof Apply apply) {
+                Node r = results.pop(), l = results.pop();
+                results.push(combine(apply.op, l, r));
+            } else if (task instanceof OperatorNode op) {
+                if (isSum(op)) {
+                    List<Node> operands = new ArrayList<>();
+                    List<Integer> signs = new ArrayList<>();
+                    flattenChain(op, operands, signs);
+                    int[] s = new int[signs.size()];
+                    for (int i = 0; i < s.length; i++)
+                        s[i] = signs.get(i);
+                    tasks.push(new Sum(s));
+                    for (int i = operands.size() - 1; i >= 0; i--)
+                        tasks.push(operands.get(i));
+                } else {
+                    tasks.push(new Apply(op));
+                    tasks.push(op.getRight());
+                    tasks.push(op.getLeft());
+                }
+            } else {
+                results.push((Node) task);
+            }
+        }
+        return results.pop();
+    }
+
+    // Finish a non-sum operator whose operands are simplified.
+    private Node combine(OperatorNode op, Node l, Node r) {
+        String o = op.getOp();
+        Double a = valueOf(l), b = valueOf(r);
+        switch (o) {
+            case "*" -> {
+                if (a != null && b != null)
+                    return fold(o, a * b, l, r);
+                if (a != null)
+                    return scale(a, r, l);
+                if (b != null)
+                    return scale(b, l, r);
+            }
+            case "/" -> {
+                if (b != null && Math.abs(b) >= 1e-12) {
+                    if (a != null)
+                        return fold(o, a / b, l, r);
+                    if (b == 1.0)
+                        return l;
+                }
+            }
+            case "^" -> {
+                if (b != null) {
+                    if (a != null)
+                        return fold(o, Math.pow(a, b), l, r);
+                    if (b == 1.0)
+                        return l;
+                    if (b == 0.0 && cannotBlowUp(l))
+                        return number(1.0);
+                }
+            }
+            default -> {
+            }
+        }
+        return l == op.getLeft() && r == op.getRight() ? op : interner.node(o, l, r);
+    }
+
+    // c * x, with x not a number; c is the original operand node
+    private Node scale(double c, Node x, Node constant) {
+        // c * (d * y) -> (c*d) * y
+        while (c != 1.0 && !(c == 0.0 && cannotBlowUp(x)) && x instanceof OperatorNode xo
+                && xo.getOp().equals("*")) {
+            Double d = valueOf(xo.getLeft());
+            Node y = xo.getRight();
+            if (d == null) {
+                d = valueOf(xo.getRight());
+                y = xo.getLeft();
+            }
+            if (d == null || !Double.isFinite(c * d))
+                break;
+            c *= d;
+            x = y;
+            constant = null;
+        }
+        if (c == 1.0)
+            return x;
+        if (c == 0.0 && cannotBlowUp(x))
+            return number(0.0);
+        return interner.node("*", constant != null ? constant : number(c), x);
+    }
+
+    private static boolean isSum(Node n) {
+        return n instanceof OperatorNode op && (op.getOp().equals("+") || op.getOp().equals("-"));
+    }
+
+    // Operands of the +/- chain under op, left to right, with their signs.
+    private static void flattenChain(OperatorNode op, List<Node> operands, List<Integer> signs) {
+        Deque<Node> pending = new ArrayDeque<>();
+        Deque<Integer> pendingSigns = new ArrayDeque<>();
+        pending.push(op);
+        pendingSigns.push(1);
+        while (!pending.isEmpty()) {
+            Node n = pending.pop();
+            int sign = pendingSigns.pop();
+            if (isSum(n)) {
+                OperatorNode o = (OperatorNode) n;
+                pending.push(o.getRight());
+                pendingSigns.push(o.getOp().equals("-") ? -sign : sign);
+                pending.push(o.getLeft());
+                pendingSigns.push(sign);
+            } else {
+                operands.add(n);
+                signs.add(sign);
+            }
+        }
+    }
+
+    // Append the terms of an already simplified operand, splicing in its chain when it is a sum.
+    private void flatten(Node n, int sign, List<Term> terms) {
+        if (!isSum(n)) {
+            terms.add(Term.of(n, sign));
+            return;
+        }
+        List<Node> operands = new ArrayList<>();
+        List<Integer> signs = new ArrayList<>();
+        flattenChain((OperatorNode) n, operands, signs);
+        for (int i = 0; i < operands.size(); i++)
+            terms.add(Term.of(operands.get(i), sign * signs.get(i)));
+    }
+
+    private Node sum(List<Term> terms) {
+        // group by core; constants have a null core
+        Map<Node, List<Term>> groups = new LinkedHashMap<>();
+        List<Term> constants = new ArrayList<>();
+        for (Term t : terms) {
+            if (t.core == null)
+                constants.add(t);
+            else
+                groups.computeIfAbsent(t.core, k -> new ArrayList<>()).add(t);
+        }
+        List<Term> out = new ArrayList<>();
+        for (List<Term> group : groups.values()) {
+            double c = 0.0;
+            for (Term t : group)
+                c += t.coef;
+            if (group.size() == 1 || c == 0.0 || !Double.isFinite(c))
+                out.addAll(group); // a cancelled group keeps its terms, and with them the formal degree
+            else
+                out.add(new Term(c, group.get(0).core, null, 1));
+        }
+        double k = 0.0;
+        for (Term t : constants)
+            k += t.coef;
+        if (!Double.isFinite(k))
+            out.addAll(constants);
+        else if (k != 0.0 || out.isEmpty())
+            out.add(new Term(k, null, null, 1));
+
+        Node result = null;
+        for (Term t : out) {
+            int sign = t.node != null ? t.sign : (t.coef < 0 ? -1 : 1);
+            Node term = t.node != null ? t.node
+                    : t.core == null ? number(Math.abs(t.coef)) : scale(Math.abs(t.coef), t.core, null);
+            if (result == null)
+                result = sign < 0 ? negate(term) : term;
+            else
+                result = interner.node(sign < 0 ? "-" : "+", result, term);
+        }
+        return result;
+    }
+
+    private Node negate(Node term) {
+        Double v = valueOf(term);
+        if (v != null)
+            return number(-v);
+        return interner.node("*", number(-1.0), term);
+    }
+
+    // false when x contains a division or a power that is not a non-negative integer constant
+    private static boolean cannotBlowUp(Node x) {
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(x);
+        while (!pending.isEmpty()) {
+            if (!(pending.pop() instanceof OperatorNode op))
+                continue;
+            if (op.getOp().equals("/"))
+                return false;
+            if (op.getOp().equals("^")) {
+                Double e = valueOf(op.getRight());
+                if (e == null || e < 0 || e != Math.rint(e))
+                    return false;
+            }
+            pending.push(op.getRight());
+            pending.push(op.getLeft());
+        }
+        return true;
+    }
+
+    private Node fold(String op, double v, Node l, Node r) {
+        if (!Double.isFinite(v))
+            return interner.node(op, l, r);
+        return number(v);
+    }
+
+    private Node number(double v) {
+        String token = v == 0.0 ? "0" : BigDecimal.valueOf(v).stripTrailingZeros().toPlainString();
+        return interner.operand(token);
+    }
+
+    private static Double valueOf(Node n) {
+        return n instanceof OperandNode o && o.isNumber() ? o.getValue() : null;
+    }
+
+    // a +/- chain waiting for its operands' results; signs in chain order
+    private record Sum(int[] signs) {
+    }
+
+    // a non-sum operator waiting for both operands' results
+    private record Apply(OperatorNode op) {
+    }
+
+    // One operand of a sum: sign * coef * core, or a constant when core is null.
+    // node is the operand as written, reused when the term is not merged.
+    private record Term(double coef, Node core, Node node, int sign) {
+        static Term of(Node n, int sign) {
+            Double v = valueOf(n);
+            if (v != null)
+                return new Term(sign * v, null, n, sign);
+            if (n instanceof OperatorNode op && op.getOp().equals("*")) {
+                Double c = valueOf(op.getLeft());
+                if (c != null)
+                    return new Term(sign * c, op.getRight(), n, sign);
+                c = valueOf(op.getRight());
+                if (c != null)
+                    return new Term(sign * c, op.getLeft(), n, sign);
+            }
+            return new Term(sign, n, n, sign);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.algebra.algebra_solver.util;
+
+import com.algebra.algebra_solver.exception.InvalidEquationException;
+import com.algebra.algebra_solver.exception.NonPolynomialException;
+import com.algebra.algebra_solver.model.Footprint;
+import com.algebra.algebra_solver.model.Node;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Sparse multivariate expansion of an expression: a list of monomials, each an
+ * exponent vector over {@link #variables()} and a coefficient.
+ * <p>
+ * Built once per stored equation so that solving only has to substitute the
+ * knowns ({@link #substitute}) instead of re-walking the tree. Monomials whose
+ * coefficients cancel are kept, so the degree seen by the solver is the same
+ * formal degree {@link PolynomialUtils#toPolynomial} reports.
+ */
+public final class MultiPolynomial {
+    // expansion gives up past these limits and solving falls back to the tree walk
+    static final int MAX_TERMS = 4096;
+    static final long MAX_WORK = 1L << 22;
+
+    private final String[] variables;
+    private final int[] exponents; // terms x variables.length, row-major
+    private final double[] coeffs;
+
+    private MultiPolynomial(String[] variables, int[] exponents, double[] coeffs) {
+        this.variables = variables;
+        this.exponents = exponents;
+        this.coeffs = coeffs;
+    }
+
+    /**
+     * Expand {@code root} over {@code variables}, which must list every
+     * variable of the tree in first-occurrence order (the compiled slots).
+     *
+     * @return the expansion, or null when the tree divides by or raises to a
+     *         non-constant, has an exponent outside 0..{@link PolynomialRoots#MAX_DEGREE},
+     *         divides by zero or
+     *         is too large to expand; the tree walk reports those cases
+     */
+    public static MultiPolynomial expand(Node root, String[] variables) {
+        Expander x = new Expander(variables);
+        Map<Monomial, Double> terms = x.build(root);
+        if (terms == null)
+            return null;
+        int n = variables.length;
+        int[] exponents = new int[terms.size() * n];
+        double[] coeffs = new double[terms.size()];
+        int t = 0;
+        for (Map.Entry<Monomial, Double> term : terms.entrySet()) {
+            System.arraycopy(term.getKey().e, 0, exponents, t * n, n);
+            coeffs[t++] = term.getValue();
+        }
+        return new MultiPolynomial(variables.clone(), exponents, coeffs);
+    }
+
+    public String[] variables() {
+        return variables.clone();
+    }
+
+    public int terms() {
+        return coeffs.length;
+    }
+
+    /** Bytes {@link #writeTo} takes. */
+    public int encodedSize() {
+        return 4 + exponents.length * 4 + coeffs.length * 8;
+    }
+
+    /** Write the term count, exponents and coefficients at the buffer's position; not the variables. */
+    public void writeTo(ByteBuffer buf) {
+        buf.putInt(coeffs.length);
+        for (int e : exponents)
+            buf.putInt(e);
+        for (double c : coeffs)
+            buf.putDouble(c);
+    }
+
+    /** Read an expansion written by {@link #writeTo} over the same {@code variables}. */
+    public static MultiPolynomial readFrom(ByteBuffer buf, String[] variables) {
+        int terms = buf.getInt();
+        int[] exponents = new int[terms * variables.length];
+        for (int i = 0; i < exponents.length; i++)
+            exponents[i] = buf.getInt();
+        double[] coeffs = new double[terms];
+        for (int i = 0; i < terms; i++)
+            coeffs[i] = buf.getDouble();
+        return new MultiPolynomial(variables.clone(), exponents, coeffs);
+    }
+
+    /** Heap size of the expansion and its arrays, not counting the variable names. */
+    public long sizeInBytes() {
+        return Footprint.object(3, 0) + Footprint.references(variables.length)
+                + Footprint.array(exponents.length, 4) + Footprint.array(coeffs.length, 8);
+    }
+
+    /**
+     * Collect the coefficients of {@code var} with every other variable
+     * replaced by its known value; same result and errors as
+     * {@link PolynomialUtils#toPolynomial}.
+     */
+    public Polynomial substitute(String var, Map<String, Double> knowns) {
+        PolynomialUtils.requireKnowns(variables, var, knowns);
+        int n = variables.length;
+        int vi = -1;
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            if (variables[i].equals(var))
+                vi = i;
+            else
+                values[i] = knowns.get(variables[i]);
+        }
+        int degree = 0;
+        if (vi >= 0)
+            for (int t = 0; t < coeffs.length; t++)
+                degree = Math.max(degree, exponents[t * n + vi]);
+        double[] out = new double[degree + 1];
+        for (int t = 0; t < coeffs.length; t++) {
+            double m = coeffs[t];
+            for (int i = 0; i < n; i++)
+                if (i != vi)
+                    for (int k = exponents[t * n + i]; k > 0; k--)
+                        m *= values[i];
+            out[vi >= 0 ? exponents[t * n + vi] : 0] += m;
+        }
+        return Polynomial.of(out).clamp(1e-12);
+    }
+
+    /**
+     * The coefficients of {@code var} as polynomials in the remaining
+     * variables, for substituting many sets of knowns without re-collecting
+     * terms; see {@link Coefficients#evaluate}.
+     */
+    public Coefficients coefficientsOf(String var) {
+        int n = variables.length;
+        int vi = Arrays.asList(variables).indexOf(var);
+        String[] others = new String[vi >= 0 ? n - 1 : n];
+        for (int i = 0, k = 0; i < n; i++)
+            if (i != vi)
+                others[k++] = variables[i];
+        int[] power = new int[coeffs.length];
+        int[] rest = new int[coeffs.length * others.length];
+        int degree = 0;
+        for (int t = 0; t < coeffs.length; t++) {
+            for (int i = 0, k = 0; i < n; i++) {
+                if (i == vi)
+                    power[t] = exponents[t * n + i];
+                else
+                    rest[t * others.length + k++] = exponents[t * n + i];
+            }
+            degree = Math.max(degree, power[t]);
+        }
+        return new Coefficients(others, degree, power, rest, coeffs);
+    }
+
+    /**
+     * The expansion as a linear function of several unknowns, with every other
+     * variable replaced by its known value. {@code columnOf} numbers the
+     * unknowns; terms that vanish after substitution are ignored.
+     *
+     * @throws NonPolynomialException  when a term has degree above one in the unknowns
+     * @throws InvalidEquationException when a variable is neither an unknown nor known
+     */
+    public LinearForm linearize(Map<String, Integer> columnOf, Map<String, Double> knowns) {
+        int n = variables.length;
+        int[] column = new int[n];
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            Integer c = columnOf.get(variables[i]);
+            column[i] = c == null ? -1 : c;
+            if (c != null)
+                continue;
+            Double v = knowns == null ? null : knowns.get(variables[i]);
+            if (v == null)
+                throw new InvalidEquationException("Missing known value for '" + variables[i] + "'");
+            values[i] = v;
+        }
+        Map<Integer, Double> coefficients = new TreeMap<>();
+        double constant = 0;
+        for (int t = 0; t < coeffs.length; t++) {
+            double m = coeffs[t];
+            int unknown = -1, degree = 0;
+            for (int i = 0; i < n; i++) {
+                int e = exponents[t * n + i];
+                if (e == 0)
+                    continue;
+                if (column[i] >= 0) {
+                    unknown = column[i];
+                    degree += e;
+                } else {
+                    for (int k = e; k > 0; k--)
+                        m *= values[i];
+                }
+            }
+            if (m == 0.0)
+                continue;
+            if (degree > 1)
+                throw new NonPolynomialException("Term of degree " + degree + " in the unknowns");
+            if (unknown < 0)
+                constant += m;
+            else
+                coefficients.merge(unknown, m, Double::sum);
+        }
+        coefficients.values().removeIf(c -> Math.abs(c) < 1e-12);
+        int[] columns = new int[coefficients.size()];
+        double[] coefficientValues = new double[columns.length];
+        int k = 0;
+        for (Map.Entry<Integer, Double> entry : coefficients.entrySet()) {
+            columns[k] = entry.getKey();
+            coefficientValues[k++] = entry.getValue();
+        }
+        return new LinearForm(columns, coefficientValues, Math.abs(constant) < 1e-12 ? 0.0 : constant);
+    }
+
+    /** {@code sum(coefficients[k] * unknown columns[k]) + constant}, columns ascending. */
+    public static final class LinearForm {
+        public final int[] columns;
+        public final double[] coefficients;
+        public final double constant;
+
+        LinearForm(int[] columns, double[] coefficients, double constant) {
+            this.columns = columns;
+            this.coefficients = coefficients;
+            this.constant = constant;
+        }
+    }
+
+    /** One unknown's coefficients, as a function of the other variables. */
+    public static final class Coefficients {
+        private final String[] knowns;
+        private final int degree;
+        private final int[] power; // per term, the exponent of the unknown
+        private final int[] rest; // terms x knowns.length
+        private final double[] coeffs;
+
+        private Coefficients(String[] knowns, int degree, int[] power, int[] rest, double[] coeffs) {
+            this.knowns = knowns;
+            this.degree = degree;
+            this.power = power;
+            this.rest = rest;
+            this.coeffs = coeffs;
+        }
+
+        /** Variables whose values {@link #evaluate} takes, in this order. */
+        public String[] knowns() {
+            return knowns.clone();
+        }
+
+        /** Formal degree in the unknown, as {@link MultiPolynomial#substitute} reports it. */
+        public int degree() {
+            return degree;
+        }
+
+        /**
+         * Write the coefficient of each power of the unknown, ascending, into
+         * {@code out[0..degree]}; same values as {@link MultiPolynomial#substitute}. Does not
+         * allocate.
+         */
+        public void evaluate(double[] values, double[] out) {
+            int n = knowns.length;
+            Arrays.fill(out, 0, degree + 1, 0.0);
+            for (int t = 0; t < coeffs.length; t++) {
+                double m = coeffs[t];
+                for (int i = 0; i < n; i++)
+                    for (int k = rest[t * n + i]; k > 0; k--)
+                        m *= values[i];
+                out[power[t]] += m;
+            }
+            for (int k = 0; k <= degree; k++)
+                if (Math.abs(out[k]) < 1e-12)
+                    out[k] = 0.0;
+        }
+    }
+
+    private static final class Monomial {
+        final int[] e;
+        final int hash;
+
+        Monomial(int[] e) {
+            this.e = e;
+            this.hash = Arrays.hashCode(e);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Monomial m && Arrays.equals(e, m.e);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // Every step returns null once the expansion has to be abandoned.
+    private static final class Expander {
+        final Map<String, Integer> index = new HashMap<>();
+        final Monomial one;
+        long work;
+
+        Expander(String[] variables) {
+            for (int i = 0; i < variables.length; i++)
+                index.put(variables[i], i);
+            one = new Monomial(new int[variables.length]);
+        }
+
+        Map<Monomial, Double> build(Node root) {
+            return root.fold(o -> {
+                Map<Monomial, Double> terms = new HashMap<>();
+                if (o.isNumber()) {
+                    terms.put(one, o.getValue());
+                } else {
+                    Integer i = index.get(o.getToken());
+                    if (i == null)
+                        return null;
+                    int[] e = new int[one.e.length];
+                    e[i] = 1;
+                    terms.put(new Monomial(e), 1.0);
+                }
+                return terms;
+            }, (op, l, r) -> l == null || r == null ? null : combine(op.getOp(), l, r));
+        }
+
+        Map<Monomial, Double> combine(String op, Map<Monomial, Double> l, Map<Monomial, Double> r) {
+            return switch (op) {
+                case "+" -> merge(l, r, 1.0);
+                case "-" -> merge(l, r, -1.0);
+                case "*" -> multiply(l, r);
+                case "/" -> {
+                    if (!isConstant(r) || Math.abs(r.get(one)) < 1e-12)
+                        yield null;
+                    double s = 1.0 / r.get(one);
+                    l.replaceAll((m, c) -> c * s);
+                    yield l;
+                }
+                case "^" -> {
+                    if (!isConstant(r))
+                        yield null;
+                    double v = r.get(one);
+                    int exp = (int) Math.round(v);
+                    if (Math.abs(v - exp) >= 1e-9 || exp < 0 || exp > PolynomialRoots.MAX_DEGREE)
+                        yield null;
+                    yield pow(l, exp);
+                }
+                default -> null;
+            };
+        }
+
+        boolean isConstant(Map<Monomial, Double> terms) {
+            return terms.size() == 1 && terms.containsKey(one);
+        }
+
+        Map<Monomial, Double> merge(Map<Monomial, Double> l, Map<Monomial, Double> r, double sign) {
+            for (Map.Entry<Monomial, Double> term : r.entrySet())
+                l.merge(term.getKey(), sign * term.getValue(), Double::sum);
+            return l.size() > MAX_TERMS ? null : l;
+        }
+
+        // repeated squaring; multiply returns a new map and leaves its operands intact
+        Map<Monomial, Double> pow(Map<Monomial, Double> base, int exp) {
+            Map<Monomial, Double> result = new HashMap<>();
+            result.put(one, 1.0);
+            for (int e = exp; e > 0 && base != null && result != null; e >>>= 1) {
+                if ((e & 1) != 0)
+                    result = multiply(result, base);
+                if (e > 1)
+                    base = multiply(base, base);
+            }
+            return base == null ? null : result;
+        }
+
+        Map<Monomial, Double> multiply(Map<Monomial, Double> l, Map<Monomial, Double> r) {
+            work += (long) l.size() * r.size();
+            if (work > MAX_WORK)
+                return null;
+            Map<Monomial, Double> out = new HashMap<>();
+            for (Map.Entry<Monomial, Double> a : l.entrySet()) {
+                for (Map.Entry<Monomial, Double> b : r.entrySet()) {
+                    int[] e = a.getKey().e.clone();
+                    int[] f = b.getKey().e;
+                    for (int i = 0; i < e.length; i++)
+                        e[i] += f[i];
+                    out.merge(new Monomial(e), a.getValue() * b.getValue(), Double::sum);
+                }
+            }
+            return out.size() > MAX_TERMS ? null : out;
+        }
+    }
+}
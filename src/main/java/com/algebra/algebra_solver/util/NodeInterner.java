@@ -0,0 +1,141 @@
+package com.algebra.algebra_solver.util;
+
+import com.algebra.algebra_solver.model.Node;
+import com.algebra.algebra_solver.model.OperandNode;
+import com.algebra.algebra_solver.model.OperatorNode;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Hash-consing for expression trees: {@link #intern} returns a tree in which
+ * every structurally identical subtree, within the tree and across all trees
+ * interned before it by the same interner, is one shared node.
+ * <p>
+ * Operands of {@code +} and {@code *} are put in a canonical order first, so
+ * {@code x + 2} and {@code 2 + x} intern to the same node. Because children
+ * are interned before their parent, two nodes are structurally equal exactly
+ * when they are the same object, which makes lookups and duplicate checks
+ * O(1) per node.
+ * <p>
+ * Stored equations keep only their {@link com.algebra.algebra_solver.model.CompactTree},
+ * so an interner is scratch space for canonicalising and simplifying one tree:
+ * it holds its nodes strongly, is not thread-safe, and is dropped with the
+ * tree it built.
+ */
+public final class NodeInterner {
+    private Entry[] table = new Entry[64];
+    private int size;
+
+    /** Canonical, shared version of {@code root}; nodes are reused where they already match. */
+    public Node intern(Node root) {
+        return root.fold(this::lookup, (op, l, r) -> node(op, op.getOp(), l, r));
+    }
+
+    /** Interned {@code l op r} for operands that are already interned; O(1). */
+    public Node node(String op, Node l, Node r) {
+        return node(null, op, l, r);
+    }
+
+    /** Interned operand for {@code token}. */
+    public Node operand(String token) {
+        return intern(new OperandNode(token));
+    }
+
+    // original, when given, is reused if canonical ordering left its children in place
+    private Node node(OperatorNode original, String op, Node l, Node r) {
+        if (commutative(op) && compare(l, r) > 0) {
+            Node t = l;
+            l = r;
+            r = t;
+        }
+        Node candidate = original != null && l == original.getLeft() && r == original.getRight() ? original
+                : new OperatorNode(op, l, r);
+        return lookup(candidate);
+    }
+
+    /** Distinct nodes interned so far. */
+    public int size() {
+        return size;
+    }
+
+    private Node lookup(Node candidate) {
+        int h = candidate.structuralHash();
+        int i = h & (table.length - 1);
+        for (Entry e = table[i]; e != null; e = e.next)
+            if (e.hash == h && sameNode(e.node, candidate))
+                return e.node;
+        table[i] = new Entry(candidate, table[i]);
+        if (++size > table.length * 3 / 4)
+            resize();
+        return candidate;
+    }
+
+    private void resize() {
+        Entry[] old = table;
+        table = new Entry[old.length * 2];
+        for (Entry head : old) {
+            for (Entry e = head, next; e != null; e = next) {
+                next = e.next;
+                int i = e.hash & (table.length - 1);
+                e.next = table[i];
+                table[i] = e;
+            }
+        }
+    }
+
+    private static boolean commutative(String op) {
+        return "+".equals(op) || "*".equals(op);
+    }
+
+    // Total order on interned nodes; deterministic across runs so the canonical
+    // form (and the compiled slot order) survives a restart.
+    static int compare(Node a, Node b) {
+        // pairs still to compare, left operands before right; only hash ties descend
+        Deque<Node> pending = new ArrayDeque<>();
+        for (;;) {
+            if (a != b) {
+                int c = Integer.compare(a.structuralHash(), b.structuralHash());
+                if (c != 0)
+                    return c;
+                if (a instanceof OperandNode x)
+                    return b instanceof OperandNode y ? x.getToken().compareTo(y.getToken()) : -1;
+                if (b instanceof OperandNode)
+                    return 1;
+                OperatorNode x = (OperatorNode) a, y = (OperatorNode) b;
+                c = x.getOp().compareTo(y.getOp());
+                if (c != 0)
+                    return c;
+                pending.push(y.getRight());
+                pending.push(x.getRight());
+                pending.push(y.getLeft());
+                pending.push(x.getLeft());
+            }
+            if (pending.isEmpty())
+                return 0;
+            a = pending.pop();
+            b = pending.pop();
+        }
+    }
+
+    // children are already interned, so they compare by identity
+    private static boolean sameNode(Node a, Node b) {
+        if (a instanceof OperandNode x)
+            return b instanceof OperandNode y && x.getToken().equals(y.getToken());
+        if (a instanceof OperatorNode x && b instanceof OperatorNode y)
+            return x.getOp().equals(y.getOp()) && x.getLeft() == y.getLeft() && x.getRight() == y.getRight();
+        return false;
+    }
+
+    private static final class Entry {
+        final Node node;
+        final int hash;
+        Entry next;
+
+        Entry(Node node, Entry next) {
+            this.node = node;
+            this.hash = node.structuralHash();
+            this.next = next;
+        }
+    }
+}
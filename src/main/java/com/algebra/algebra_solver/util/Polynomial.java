@@ -0,0 +1,156 @@
+package com.algebra.algebra_solver.util;
+
+import java.util.Arrays;
+
+/**
+ * Dense univariate polynomial: {@code coefficient(k)} is the coefficient of
+ * x^k. The degree is the formal one, i.e. the highest exponent produced by the
+ * arithmetic even if its coefficient cancelled to zero, which is what the
+ * solver reports.
+ * <p>
+ * Arithmetic mutates the receiver and returns it. {@link #multiply} writes
+ * into a spare buffer that is swapped with the live one, so a polynomial that
+ * is reused (see {@link PolynomialUtils}) stops allocating once its buffers
+ * have grown to size.
+ */
+public final class Polynomial {
+    private double[] coeffs;
+    private double[] spare;
+    private int degree;
+
+    public Polynomial() {
+        this(4);
+    }
+
+    private Polynomial(int capacity) {
+        coeffs = new double[capacity];
+        spare = new double[capacity];
+    }
+
+    public static Polynomial constant(double c) {
+        return new Polynomial().setConstant(c);
+    }
+
+    public static Polynomial variable() {
+        return new Polynomial().setVariable();
+    }
+
+    /** Build from coefficients in ascending order; the degree is {@code coeffs.length - 1}. */
+    public static Polynomial of(double... coeffs) {
+        Polynomial p = new Polynomial(Math.max(1, coeffs.length));
+        System.arraycopy(coeffs, 0, p.coeffs, 0, coeffs.length);
+        p.degree = Math.max(0, coeffs.length - 1);
+        return p;
+    }
+
+    public int degree() {
+        return degree;
+    }
+
+    public double coefficient(int k) {
+        return k >= 0 && k <= degree ? coeffs[k] : 0.0;
+    }
+
+    /** Coefficients in ascending order, {@code degree() + 1} entries. */
+    public double[] coefficients() {
+        return Arrays.copyOf(coeffs, degree + 1);
+    }
+
+    public boolean isConstant() {
+        return degree == 0;
+    }
+
+    Polynomial setConstant(double c) {
+        coeffs[0] = c;
+        degree = 0;
+        return this;
+    }
+
+    Polynomial setVariable() {
+        ensure(1);
+        coeffs[0] = 0.0;
+        coeffs[1] = 1.0;
+        degree = 1;
+        return this;
+    }
+
+    public Polynomial add(Polynomial o) {
+        widen(o.degree);
+        for (int k = 0; k <= o.degree; k++)
+            coeffs[k] += o.coeffs[k];
+        return this;
+    }
+
+    public Polynomial subtract(Polynomial o) {
+        widen(o.degree);
+        for (int k = 0; k <= o.degree; k++)
+            coeffs[k] -= o.coeffs[k];
+        return this;
+    }
+
+    public Polynomial scale(double s) {
+        for (int k = 0; k <= degree; k++)
+            coeffs[k] *= s;
+        return this;
+    }
+
+    public Polynomial multiply(Polynomial o) {
+        int n = degree + o.degree;
+        if (spare.length <= n)
+            spare = new double[Math.max(n + 1, spare.length * 2)];
+        Arrays.fill(spare, 0, n + 1, 0.0);
+        for (int i = 0; i <= degree; i++) {
+            double a = coeffs[i];
+            for (int j = 0; j <= o.degree; j++)
+                spare[i + j] += a * o.coeffs[j];
+        }
+        double[] t = coeffs;
+        coeffs = spare;
+        spare = t;
+        degree = n;
+        return this;
+    }
+
+    /** Raise to a non-negative integer power by repeated squaring. */
+    public Polynomial pow(int exp) {
+        if (exp == 0)
+            return setConstant(1.0);
+        Polynomial base = of(coefficients());
+        setConstant(1.0);
+        for (int e = exp;;) {
+            if ((e & 1) != 0)
+                multiply(base);
+            e >>>= 1;
+            if (e == 0)
+                return this;
+            base.multiply(base);
+        }
+    }
+
+    /** Replace coefficients smaller than {@code eps} in magnitude by exact zeros. */
+    public Polynomial clamp(double eps) {
+        for (int k = 0; k <= degree; k++)
+            if (Math.abs(coeffs[k]) < eps)
+                coeffs[k] = 0.0;
+        return this;
+    }
+
+    // grow the formal degree to at least d, zero-filling new coefficients
+    private void widen(int d) {
+        if (d <= degree)
+            return;
+        ensure(d);
+        Arrays.fill(coeffs, degree + 1, d + 1, 0.0);
+        degree = d;
+    }
+
+    private void ensure(int d) {
+        if (coeffs.length <= d)
+            coeffs = Arrays.copyOf(coeffs, Math.max(d + 1, coeffs.length * 2));
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(coefficients());
+    }
+}
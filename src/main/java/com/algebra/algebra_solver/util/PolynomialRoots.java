@@ -0,0 +1,252 @@
+package com.algebra.algebra_solver.util;
+
+import java.util.Arrays;
+
+/**
+ * All roots of a real polynomial of degree up to {@link #MAX_DEGREE}, by the
+ * Aberth–Ehrlich iteration: each approximation {@code z_i} moves by
+ * {@code w / (1 - w * sum_{j != i} 1 / (z_i - z_j))} with
+ * {@code w = p(z_i) / p'(z_i)}, which converges cubically to simple roots and
+ * keeps the approximations from collapsing onto the same root.
+ * <p>
+ * A sweep is O(n^2) and works in a per-thread workspace, so nothing is
+ * allocated until the roots are copied out. Outside the unit circle
+ * {@code p} is evaluated through its reversed polynomial at {@code 1/z},
+ * which keeps large roots of high degree from overflowing. A root is reported
+ * as real when {@code p} vanishes to rounding at its real part; real roots
+ * are then polished by Newton steps. Multiple roots are reported once per
+ * multiplicity, to about {@code eps^(1/m)} relative accuracy.
+ */
+public final class PolynomialRoots {
+    public static final int MAX_DEGREE = 64;
+
+    private static final int MAX_SWEEPS = 500;
+    private static final int POLISH_STEPS = 4;
+    private static final double EPS = Math.ulp(1.0);
+    private static final ThreadLocal<PolynomialRoots> WORKSPACE = ThreadLocal.withInitial(PolynomialRoots::new);
+
+    private final double[] c = new double[MAX_DEGREE + 1]; // monic, ascending
+    private final double[] abs = new double[MAX_DEGREE + 1]; // |c[k]|, for the rounding bound
+    private final double[] re = new double[MAX_DEGREE];
+    private final double[] im = new double[MAX_DEGREE];
+    private final boolean[] done = new boolean[MAX_DEGREE];
+    private final boolean[] real = new boolean[MAX_DEGREE];
+    private int n;
+    // set by step(): the Newton correction p/p' and |p| relative to its rounding bound
+    private double wr, wi, residual;
+
+    private PolynomialRoots() {
+    }
+
+    /** Real roots in ascending order, and the rest as {re, im} pairs ordered by re then im. */
+    public static final class Roots {
+        public final double[] real;
+        public final double[][] complex;
+
+        Roots(double[] real, double[][] complex) {
+            this.real = real;
+            this.complex = complex;
+        }
+    }
+
+    /**
+     * Roots of {@code sum coeffs[k] x^k}. Leading zero coefficients are
+     * ignored; what is left must have degree 1..{@link #MAX_DEGREE}.
+     */
+    public static Roots find(double[] coeffs) {
+        return WORKSPACE.get().solve(coeffs);
+    }
+
+    private Roots solve(double[] coeffs) {
+        int deg = coeffs.length - 1;
+        while (deg > 0 && coeffs[deg] == 0.0)
+            deg--;
+        if (deg < 1 || deg > MAX_DEGREE)
+            throw new IllegalArgumentException("Degree must be 1.." + MAX_DEGREE + ", got " + deg);
+        int zeros = 0; // exact roots at 0 are factored out
+        while (coeffs[zeros] == 0.0)
+            zeros++;
+        n = deg - zeros;
+        for (int k = 0; k <= n; k++) {
+            c[k] = coeffs[k + zeros] / coeffs[deg];
+            if (!Double.isFinite(c[k]))
+                throw new ArithmeticException("Polynomial coefficients out of range");
+            abs[k] = Math.abs(c[k]);
+        }
+        if (n > 0) {
+            start();
+            iterate();
+        }
+
+        int realCount = zeros;
+        for (int i = 0; i < n; i++) {
+            real[i] = isReal(i);
+            if (real[i])
+                realCount++;
+        }
+        double[] reals = new double[realCount];
+        double[][] complex = new double[deg - realCount][];
+        int r = zeros, k = 0; // reals[0..zeros) are the roots at 0
+        for (int i = 0; i < n; i++) {
+            if (real[i])
+                reals[r++] = polish(re[i]);
+            else
+                complex[k++] = new double[] { re[i], im[i] };
+        }
+        Arrays.sort(reals);
+        Arrays.sort(complex, (a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(a[1], b[1]));
+        return new Roots(reals, complex);
+    }
+
+    // Points on a circle whose radius is the geometric mean of the root
+    // moduli; the angular offset keeps them off the real axis, where
+    // conjugate pairs could not separate.
+    private void start() {
+        double radius = Math.pow(abs[0], 1.0 / n);
+        for (int i = 0; i < n; i++) {
+            double angle = 2 * Math.PI * i / n + 0.4;
+            re[i] = radius * Math.cos(angle);
+            im[i] = radius * Math.sin(angle);
+            done[i] = false;
+        }
+    }
+
+    private void iterate() {
+        int remaining = n;
+        for (int sweep = 0; sweep < MAX_SWEEPS && remaining > 0; sweep++) {
+            for (int i = 0; i < n; i++) {
+                if (done[i])
+                    continue;
+                double x = re[i], y = im[i];
+                if (step(x, y)) {
+                    done[i] = true;
+                    remaining--;
+                    continue;
+                }
+                if (Double.isNaN(wr)) {
+                    // stationary point of p: nudge off it
+                    re[i] = x + 1e-3 * (1 + Math.abs(x));
+                    continue;
+                }
+                double sr = 0.0, si = 0.0; // sum of 1 / (z_i - z_j)
+                for (int j = 0; j < n; j++) {
+                    if (j == i)
+                        continue;
+                    double dx = x - re[j], dy = y - im[j];
+                    double q = dx * dx + dy * dy;
+                    if (q > 0) {
+                        sr += dx / q;
+                        si -= dy / q;
+                    }
+                }
+                // correction = w / (1 - w * s)
+                double ar = 1 - (wr * sr - wi * si), ai = -(wr * si + wi * sr);
+                double q = ar * ar + ai * ai;
+                double cr = (wr * ar + wi * ai) / q, ci = (wi * ar - wr * ai) / q;
+                re[i] = x - cr;
+                im[i] = y - ci;
+                if (cr * cr + ci * ci <= EPS * EPS * (x * x + y * y)) {
+                    done[i] = true;
+                    remaining--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluate at {@code x + iy}: sets {@link #wr}/{@link #wi} to p/p' (NaN
+     * when p' vanishes) and {@link #residual}, and returns whether |p| is
+     * within the rounding error of its evaluation.
+     */
+    private boolean step(double x, double y) {
+        double m2 = x * x + y * y;
+        double pr, pi, dr, di, bound;
+        boolean reversed = m2 > 1.0;
+        if (!reversed) {
+            double az = Math.sqrt(m2);
+            pr = c[n];
+            pi = 0.0;
+            dr = 0.0;
+            di = 0.0;
+            bound = abs[n];
+            for (int k = n - 1; k >= 0; k--) {
+                double t = dr * x - di * y + pr;
+                di = dr * y + di * x + pi;
+                dr = t;
+                t = pr * x - pi * y + c[k];
+                pi = pr * y + pi * x;
+                pr = t;
+                bound = bound * az + abs[k];
+            }
+        } else {
+            // p(z) = z^n q(1/z) with q(u) = sum c[k] u^(n-k); here (p, d) hold (q, q')
+            double ux = x / m2, uy = -y / m2, au = 1 / Math.sqrt(m2);
+            pr = c[0];
+            pi = 0.0;
+            dr = 0.0;
+            di = 0.0;
+            bound = abs[0];
+            for (int k = 1; k <= n; k++) {
+                double t = dr * ux - di * uy + pr;
+                di = dr * uy + di * ux + pi;
+                dr = t;
+                t = pr * ux - pi * uy + c[k];
+                pi = pr * uy + pi * ux;
+                pr = t;
+                bound = bound * au + abs[k];
+            }
+        }
+        double p2 = pr * pr + pi * pi;
+        residual = Math.sqrt(p2) / bound;
+        if (residual <= 4 * n * EPS) {
+            wr = wi = 0.0;
+            return true;
+        }
+        if (!reversed) {
+            double d2 = dr * dr + di * di;
+            if (d2 == 0.0) {
+                wr = wi = Double.NaN;
+                return false;
+            }
+            wr = (pr * dr + pi * di) / d2;
+            wi = (pi * dr - pr * di) / d2;
+            return false;
+        }
+        // p/p' = z / (n - u q'/q)
+        double rr = (dr * pr + di * pi) / p2, ri = (di * pr - dr * pi) / p2;
+        double ux = x / m2, uy = -y / m2;
+        double tr = n - (ux * rr - uy * ri), ti = -(ux * ri + uy * rr);
+        double t2 = tr * tr + ti * ti;
+        if (t2 == 0.0) {
+            wr = wi = Double.NaN;
+            return false;
+        }
+        wr = (x * tr + y * ti) / t2;
+        wi = (y * tr - x * ti) / t2;
+        return false;
+    }
+
+    // p vanishes to rounding on the real axis below the root; a loose factor
+    // over the stopping test lets the spread of a multiple root through
+    private boolean isReal(int i) {
+        if (im[i] == 0.0)
+            return true;
+        step(re[i], 0.0);
+        return residual <= 16 * n * EPS;
+    }
+
+    // Newton on the real axis, keeping a step only while it lowers the residual
+    private double polish(double x) {
+        step(x, 0.0);
+        double best = residual;
+        for (int it = 0; it < POLISH_STEPS && best > 0 && !Double.isNaN(wr); it++) {
+            double next = x - wr;
+            step(next, 0.0);
+            if (!(residual < best))
+                break;
+            x = next;
+            best = residual;
+        }
+        return x;
+    }
+}
@@ -0,0 +1,304 @@
+package com.algebra.algebra_solver.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Solves {@code A x = b} for a sparse matrix in compressed-row form.
+ * <p>
+ * Square systems of up to {@link #DENSE_LIMIT} unknowns are factorised
+ * densely, by LU with partial pivoting. Larger and over-determined systems
+ * are solved by CGLS (conjugate gradients on the normal equations), which
+ * only multiplies by {@code A} and its transpose and converges for any
+ * matrix of full column rank; columns are scaled to unit norm first, which
+ * makes it converge markedly faster on badly scaled systems. Since CGLS
+ * also converges on rank-deficient matrices, a second solve checks the
+ * solution is unique, so both paths report singular systems alike. Products over
+ * large matrices are split into row blocks evaluated in parallel.
+ */
+public final class SparseLinearSolver {
+    public static final String LU = "lu", CGLS = "cgls";
+
+    static final int DENSE_LIMIT = 256;
+    // products with at least this many non-zeros are split across cores
+    static final int PARALLEL_NNZ = 1 << 14;
+    private static final int BLOCK_ROWS = 1024;
+    // relative distance from a probe vector that marks a null space; see requireUnique
+    private static final double UNIQUENESS_TOLERANCE = 1e-4;
+
+    private SparseLinearSolver() {
+    }
+
+    /** Compressed rows: row i holds {@code values[start[i] .. start[i + 1])} at {@code columns[..]}. */
+    public static final class Matrix {
+        final int rows, cols;
+        final int[] start;
+        final int[] columns;
+        final double[] values;
+
+        private Matrix(int rows, int cols, int[] start, int[] columns, double[] values) {
+            this.rows = rows;
+            this.cols = cols;
+            this.start = start;
+            this.columns = columns;
+            this.values = values;
+        }
+
+        /** Row {@code i} has {@code rowValues[i][k]} in column {@code rowColumns[i][k]}. */
+        public static Matrix of(int cols, int[][] rowColumns, double[][] rowValues) {
+            int rows = rowColumns.length;
+            int[] start = new int[rows + 1];
+            for (int i = 0; i < rows; i++)
+                start[i + 1] = start[i] + rowColumns[i].length;
+            int[] columns = new int[start[rows]];
+            double[] values = new double[start[rows]];
+            for (int i = 0; i < rows; i++) {
+                System.arraycopy(rowColumns[i], 0, columns, start[i], rowColumns[i].length);
+                System.arraycopy(rowValues[i], 0, values, start[i], rowValues[i].length);
+            }
+            return new Matrix(rows, cols, start, columns, values);
+        }
+
+        public int rows() {
+            return rows;
+        }
+
+        public int cols() {
+            return cols;
+        }
+
+        public int nonZeros() {
+            return values.length;
+        }
+
+        Matrix transpose() {
+            int[] start = new int[cols + 1];
+            for (int c : columns)
+                start[c + 1]++;
+            for (int j = 0; j < cols; j++)
+                start[j + 1] += start[j];
+            int[] next = Arrays.copyOf(start, cols);
+            int[] rowsOf = new int[values.length];
+            double[] transposed = new double[values.length];
+            for (int i = 0; i < rows; i++) {
+                for (int k = this.start[i]; k < this.start[i + 1]; k++) {
+                    int slot = next[columns[k]]++;
+                    rowsOf[slot] = i;
+                    transposed[slot] = values[k];
+                }
+            }
+            return new Matrix(cols, rows, start, rowsOf, transposed);
+        }
+
+        /** {@code out = this * x}. */
+        void multiply(double[] x, double[] out) {
+            if (values.length < PARALLEL_NNZ) {
+                multiplyRows(x, out, 0, rows);
+                return;
+            }
+            int blocks = (rows + BLOCK_ROWS - 1) / BLOCK_ROWS;
+            IntStream.range(0, blocks).parallel()
+                    .forEach(b -> multiplyRows(x, out, b * BLOCK_ROWS, Math.min(rows, (b + 1) * BLOCK_ROWS)));
+        }
+
+        private void multiplyRows(double[] x, double[] out, int from, int to) {
+            for (int i = from; i < to; i++) {
+                double sum = 0;
+                for (int k = start[i]; k < start[i + 1]; k++)
+                    sum += values[k] * x[columns[k]];
+                out[i] = sum;
+            }
+        }
+    }
+
+    public static final class Solution {
+        public final double[] x;
+        public final String method;
+        public final int iterations; // 0 for LU
+        public final double residual; // ||A x - b||
+
+        Solution(double[] x, String method, int iterations, double residual) {
+            this.x = x;
+            this.method = method;
+            this.iterations = iterations;
+            this.residual = residual;
+        }
+    }
+
+    /**
+     * Solve {@code a x = b}; {@code a} needs at least as many rows as columns.
+     * CGLS stops once the residual, or for an over-determined system its
+     * projection onto the columns, has shrunk by {@code tolerance}.
+     *
+     * @throws ArithmeticException when the system is singular or CGLS does not
+     *                             converge within {@code maxIterations}
+     */
+    public static Solution solve(Matrix a, double[] b, int maxIterations, double tolerance) {
+        if (a.rows < a.cols)
+            throw new IllegalArgumentException(a.rows + " equations cannot determine " + a.cols + " unknowns");
+        return a.rows == a.cols && a.cols <= DENSE_LIMIT ? lu(a, b) : cgls(a, b, maxIterations, tolerance);
+    }
+
+    private static Solution lu(Matrix a, double[] b) {
+        int n = a.cols;
+        double[][] m = new double[n][n];
+        double[] rhs = b.clone();
+        double[] scale = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int k = a.start[i]; k < a.start[i + 1]; k++) {
+                m[i][a.columns[k]] += a.values[k];
+                scale[i] = Math.max(scale[i], Math.abs(a.values[k]));
+            }
+        }
+        for (int col = 0; col < n; col++) {
+            // pivot on the entry largest relative to its row, so one badly scaled equation cannot hide a singularity
+            int pivot = -1;
+            double best = 0;
+            for (int r = col; r < n; r++) {
+                double v = scale[r] == 0 ? 0 : Math.abs(m[r][col]) / scale[r];
+                if (v > best) {
+                    best = v;
+                    pivot = r;
+                }
+            }
+            if (best < 1e-12)
+                throw new ArithmeticException("Singular system: the equations do not determine every unknown");
+            swap(m, pivot, col);
+            swap(rhs, pivot, col);
+            swap(scale, pivot, col);
+            double[] p = m[col];
+            for (int r = col + 1; r < n; r++) {
+                double f = m[r][col] / p[col];
+                if (f == 0)
+                    continue;
+                double[] row = m[r];
+                for (int c = col; c < n; c++)
+                    row[c] -= f * p[c];
+                rhs[r] -= f * rhs[col];
+            }
+        }
+        double[] x = new double[n];
+        for (int r = n - 1; r >= 0; r--) {
+            double sum = rhs[r];
+            for (int c = r + 1; c < n; c++)
+                sum -= m[r][c] * x[c];
+            x[r] = sum / m[r][r];
+        }
+        return new Solution(x, LU, 0, residual(a, x, b));
+    }
+
+    private static Solution cgls(Matrix a, double[] b, int maxIterations, double tolerance) {
+        int rows = a.rows, cols = a.cols;
+        // solve for z = D x with A D^-1 scaled to unit columns
+        double[] norm = new double[cols];
+        for (int k = 0; k < a.values.length; k++)
+            norm[a.columns[k]] += a.values[k] * a.values[k];
+        double[] scaled = new double[a.values.length];
+        for (int j = 0; j < cols; j++) {
+            if (norm[j] == 0)
+                throw new ArithmeticException("Singular system: the equations do not determine every unknown");
+            norm[j] = Math.sqrt(norm[j]);
+        }
+        for (int k = 0; k < scaled.length; k++)
+            scaled[k] = a.values[k] / norm[a.columns[k]];
+        Matrix as = new Matrix(rows, cols, a.start, a.columns, scaled);
+        Matrix at = as.transpose();
+
+        int[] iterations = new int[1];
+        double[] z = iterate(as, at, b, maxIterations, tolerance, iterations);
+        requireUnique(as, at, maxIterations, tolerance);
+        double[] x = new double[cols];
+        for (int j = 0; j < cols; j++)
+            x[j] = z[j] / norm[j];
+        return new Solution(x, CGLS, iterations[0], residual(a, x, b));
+    }
+
+    // CGLS from zero; it converges to the least-squares solution of least norm
+    private static double[] iterate(Matrix as, Matrix at, double[] b, int maxIterations, double tolerance,
+            int[] iterations) {
+        int rows = as.rows, cols = as.cols;
+        double[] z = new double[cols];
+        double[] r = b.clone();
+        double[] s = new double[cols];
+        double[] q = new double[rows];
+        at.multiply(r, s);
+        double[] p = s.clone();
+        double gamma = dot(s, s);
+        double rNorm = Math.sqrt(dot(r, r)), bNorm = rNorm, sNorm0 = Math.sqrt(gamma);
+        int it = 0;
+        while (rNorm > tolerance * bNorm && Math.sqrt(gamma) > tolerance * sNorm0) {
+            if (it == maxIterations)
+                throw new ArithmeticException("System did not converge within " + maxIterations
+                        + " iterations (residual " + rNorm + ")");
+            it++;
+            as.multiply(p, q);
+            double qq = dot(q, q);
+            if (qq == 0)
+                break;
+            double alpha = gamma / qq;
+            for (int j = 0; j < cols; j++)
+                z[j] += alpha * p[j];
+            for (int i = 0; i < rows; i++)
+                r[i] -= alpha * q[i];
+            at.multiply(r, s);
+            double next = dot(s, s);
+            double beta = next / gamma;
+            gamma = next;
+            for (int j = 0; j < cols; j++)
+                p[j] = s[j] + beta * p[j];
+            rNorm = Math.sqrt(dot(r, r));
+        }
+        iterations[0] += it;
+        return z;
+    }
+
+    /*
+     * CGLS never leaves the row space, so a rank-deficient system still converges, to its
+     * least-norm solution. Solving A w = A v for a random v recovers v only when A has no null
+     * space; otherwise w misses v's component in it, which for a random v is far above the
+     * solver's error.
+     */
+    private static void requireUnique(Matrix as, Matrix at, int maxIterations, double tolerance) {
+        Random random = new Random(as.cols);
+        double[] v = new double[as.cols];
+        for (int j = 0; j < v.length; j++)
+            v[j] = random.nextDouble() - 0.5;
+        double[] av = new double[as.rows];
+        as.multiply(v, av);
+        double[] w = iterate(as, at, av, maxIterations, tolerance, new int[1]);
+        double miss = 0;
+        for (int j = 0; j < v.length; j++)
+            miss += (v[j] - w[j]) * (v[j] - w[j]);
+        if (Math.sqrt(miss) > UNIQUENESS_TOLERANCE * Math.sqrt(dot(v, v)))
+            throw new ArithmeticException("Singular system: the equations do not determine every unknown");
+    }
+
+    private static double residual(Matrix a, double[] x, double[] b) {
+        double[] ax = new double[a.rows];
+        a.multiply(x, ax);
+        double sum = 0;
+        for (int i = 0; i < ax.length; i++)
+            sum += (ax[i] - b[i]) * (ax[i] - b[i]);
+        return Math.sqrt(sum);
+    }
+
+    private static double dot(double[] u, double[] v) {
+        double sum = 0;
+        for (int i = 0; i < u.length; i++)
+            sum += u[i] * v[i];
+        return sum;
+    }
+
+    private static void swap(double[][] m, int i, int j) {
+        double[] t = m[i];
+        m[i] = m[j];
+        m[j] = t;
+    }
+
+    private static void swap(double[] v, int i, int j) {
+        double t = v[i];
+        v[i] = v[j];
+        v[j] = t;
+    }
+}
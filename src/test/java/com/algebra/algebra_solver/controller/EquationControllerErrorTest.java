@@ -31,6 +31,11 @@ public class EquationControllerErrorTest {
                 .andExpect(jsonPath("$.status").value(404))
                 .andExpect(jsonPath("$.error").value("Not Found"))
                 .andExpect(jsonPath("$.message", containsString("not found")));
+        // only the decimal form the API hands out names an equation
+        for (String id : new String[] { "01", "abc", "-1", "12345678901234567890" })
+            mockMvc.perform(get("/api/equations/" + id))
+                    .andExpect(status().isNotFound())
+                    .andExpect(jsonPath("$.message").value("Equation id " + id + " not found"));
     }
 
     @Test
@@ -63,4 +68,15 @@ public class EquationControllerErrorTest {
                 .andExpect(jsonPath("$.error").value("Unprocessable Entity"))
                 .andExpect(jsonPath("$.message", containsString("No real roots")));
     }
+
+    @Test
+    void errors_are_counted_in_metrics() throws Exception {
+        mockMvc.perform(get("/api/equations/424242"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/metrics/equations.errors")
+                .param("tag", "exception:EquationNotFoundException"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value", greaterThanOrEqualTo(1.0)));
+    }
 }
@@ -6,7 +6,10 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -56,4 +59,228 @@ public class EquationControllerSuccessTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.result").value(11.0));
     }
+
+    @Test
+    void evaluateBatch_returnsResultPerRow() throws Exception {
+        String storeRes = mockMvc.perform(post("/api/equations/store")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"equation\": \"x * y + 1\"}"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String equationId = storeRes.replaceAll(".*\"equationId\":\"(\\d+)\".*", "$1");
+
+        mockMvc.perform(post("/api/equations/" + equationId + "/evaluate/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"x\": [1, 2, 3], \"y\": [4, 5, 6]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(3))
+                .andExpect(jsonPath("$.results[0]").value(5.0))
+                .andExpect(jsonPath("$.results[2]").value(19.0));
+    }
+
+    @Test
+    void phaseTimersAreExposedThroughActuator() throws Exception {
+        mockMvc.perform(post("/api/equations/store")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"equation\": \"x^2 - 4\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/metrics/equations.phase").param("tag", "phase:parse"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("equations.phase"));
+        mockMvc.perform(get("/actuator/metrics/equations.store.size"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void listPagesWithCursorAndStreamsNdjson() throws Exception {
+        String first = null;
+        for (int i = 0; i < 3; i++) {
+            String res = mockMvc.perform(post("/api/equations/store")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"equation\": \"x + " + i + "\"}"))
+                    .andReturn().getResponse().getContentAsString();
+            if (first == null)
+                first = res.replaceAll(".*\"equationId\":\"(\\d+)\".*", "$1");
+        }
+        String after = String.valueOf(Long.parseLong(first) - 1);
+
+        mockMvc.perform(get("/api/equations").param("limit", "2").param("after", after))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.equations.length()").value(2))
+                .andExpect(jsonPath("$.equations[0].equationId").value(first))
+                .andExpect(jsonPath("$.nextCursor").value(String.valueOf(Long.parseLong(first) + 1)));
+
+        MvcResult async = mockMvc.perform(get("/api/equations/stream").param("after", after))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String ndjson = mockMvc.perform(asyncDispatch(async))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = ndjson.split("\n");
+        assertTrue(lines.length >= 3);
+        assertTrue(lines[0].contains("\"equationId\":\"" + first + "\""));
+    }
+
+    @Test
+    void bulkStoreAcceptsJsonArrayAndNdjson() throws Exception {
+        mockMvc.perform(post("/api/equations/store/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"x + 1\", {\"equation\": \"2y\"}, \"x +\", 5]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stored").value(2))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.results[1].index").value(1))
+                .andExpect(jsonPath("$.results[1].equationId").isString())
+                .andExpect(jsonPath("$.results[2].error").exists())
+                .andExpect(jsonPath("$.results[3].error").exists());
+
+        mockMvc.perform(post("/api/equations/store/bulk")
+                .contentType("application/x-ndjson")
+                .content("\"x^2 - 4\"\n\n{\"equation\": \"a*b\"}\nnot json\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stored").value(2))
+                .andExpect(jsonPath("$.results.length()").value(3))
+                .andExpect(jsonPath("$.results[2].error").exists());
+    }
+
+    @Test
+    void gradientReturnsValueAndPartials() throws Exception {
+        String id = mockMvc.perform(post("/api/equations/store")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"equation\": \"x^2 * y + 3y\"}"))
+                .andReturn().getResponse().getContentAsString()
+                .replaceAll(".*\"equationId\":\"(\\d+)\".*", "$1");
+
+        mockMvc.perform(post("/api/equations/" + id + "/gradient")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"variables\": {\"x\": 2, \"y\": 5}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.value").value(35.0))
+                .andExpect(jsonPath("$.gradient.x").value(20.0))
+                .andExpect(jsonPath("$.gradient.y").value(7.0));
+    }
+
+    @Test
+    void solveAutoModeFallsBackToNumeric() throws Exception {
+        String id = mockMvc.perform(post("/api/equations/store")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"equation\": \"2^x - 32\"}"))
+                .andReturn().getResponse().getContentAsString()
+                .replaceAll(".*\"equationId\":\"(\\d+)\".*", "$1");
+
+        mockMvc.perform(post("/api/equations/" + id + "/solve")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"variable\": \"x\", \"mode\": \"auto\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.method").value("numeric"))
+                .andExpect(jsonPath("$.solutions[0]").value(5.0))
+                .andExpect(jsonPath("$.convergence.converged").value(true));
+    }
+
+    @Test
+    void solveHighDegreeWithComplexRoots() throws Exception {
+        String id = mockMvc.perform(post("/api/equations/store")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"equation\": \"x^3 - 1\"}"))
+                .andReturn().getResponse().getContentAsString()
+                .replaceAll(".*\"equationId\":\"(\\d+)\".*", "$1");
+
+        mockMvc.perform(post("/api/equations/" + id + "/solve")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"variable\": \"x\", \"complex\": true}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.degree").value(3))
+                .andExpect(jsonPath("$.coefficients.length()").value(4))
+                .andExpect(jsonPath("$.solutions[0]").value(1.0))
+                .andExpect(jsonPath("$.complexSolutions.length()").value(2));
+    }
+
+    @Test
+    void solveSweepStreamsOneLinePerGridPoint() throws Exception {
+        String id = mockMvc.perform(post("/api/equations/store")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"equation\": \"x^2 - k + m\"}"))
+                .andReturn().getResponse().getContentAsString()
+                .replaceAll(".*\"equationId\":\"(\\d+)\".*", "$1");
+
+        MvcResult async = mockMvc.perform(post("/api/equations/" + id + "/solve/sweep")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"variable\": \"x\", \"knowns\": {\"k\": {\"from\": 0, \"to\": 8, \"step\": 4}, \"m\": [0, 1]}}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(async))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(6, lines.length);
+        assertEquals("{\"knowns\":{\"k\":0.0,\"m\":0.0},\"solutions\":[-0.0,0.0]}", lines[0]);
+        assertEquals("{\"knowns\":{\"k\":0.0,\"m\":1.0},\"error\":\"No real roots (discriminant < 0)\"}", lines[1]);
+        assertEquals("{\"knowns\":{\"k\":4.0,\"m\":0.0},\"solutions\":[-2.0,2.0]}", lines[2]);
+
+        mockMvc.perform(post("/api/equations/" + id + "/solve/sweep")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"knowns\": {\"k\": [1, 2]}}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void sessionsPushEachUpdatedResult() throws Exception {
+        String id = mockMvc.perform(post("/api/equations/store")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"equation\": \"3*x + 2*y\"}"))
+                .andReturn().getResponse().getContentAsString()
+                .replaceAll(".*\"equationId\":\"(\\d+)\".*", "$1");
+
+        String sid = mockMvc.perform(post("/api/equations/" + id + "/sessions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"variables\": {\"x\": 1, \"y\": 2}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value(7.0))
+                .andExpect(jsonPath("$.version").value(1))
+                .andReturn().getResponse().getContentAsString()
+                .replaceAll(".*\"sessionId\":\"([^\"]+)\".*", "$1");
+
+        MvcResult events = mockMvc.perform(get("/api/equations/sessions/" + sid + "/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(patch("/api/equations/sessions/" + sid)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"variables\": {\"y\": 5}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value(13.0))
+                .andExpect(jsonPath("$.version").value(2))
+                .andExpect(jsonPath("$.variables.x").value(1.0))
+                .andExpect(jsonPath("$.recomputed").value(3));
+        mockMvc.perform(delete("/api/equations/sessions/" + sid))
+                .andExpect(status().isOk());
+
+        String stream = events.getResponse().getContentAsString();
+        assertTrue(stream.contains("event:result\nid:1\ndata:{"), stream);
+        assertTrue(stream.contains("id:2\ndata:{") && stream.contains("\"result\":13.0"), stream);
+        mockMvc.perform(get("/api/equations/sessions/" + sid))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void solveSystemOfStoredEquations() throws Exception {
+        String[] ids = new String[2];
+        String[] equations = { "x + y - 3", "x - y - k" };
+        for (int i = 0; i < 2; i++)
+            ids[i] = mockMvc.perform(post("/api/equations/store")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"equation\": \"" + equations[i] + "\"}"))
+                    .andReturn().getResponse().getContentAsString()
+                    .replaceAll(".*\"equationId\":\"(\\d+)\".*", "$1");
+
+        mockMvc.perform(post("/api/equations/systems/solve")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"equationIds\": [\"" + ids[0] + "\", \"" + ids[1] + "\"], \"knowns\": {\"k\": 1}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.solution.x").value(2.0))
+                .andExpect(jsonPath("$.solution.y").value(1.0))
+                .andExpect(jsonPath("$.method").value("lu"));
+    }
 }
@@ -0,0 +1,115 @@
+package com.algebra.algebra_solver.persistence;
+
+import com.algebra.algebra_solver.exception.EquationNotFoundException;
+import com.algebra.algebra_solver.service.EquationService;
+import com.algebra.algebra_solver.service.EquationServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EquationLogTest {
+
+    @TempDir
+    Path dir;
+
+    private EquationLog openLog() {
+        // tiny segments so a handful of equations spans several files
+        return new EquationLog(dir, 512, 0, 0, true);
+    }
+
+    private long count(String glob) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> dir.getFileSystem().getPathMatcher("glob:" + glob).matches(p.getFileName()))
+                    .count();
+        }
+    }
+
+    @Test
+    void restart_restores_equations_and_id_counter() {
+        EquationLog log = openLog();
+        EquationService svc = new EquationServiceImpl(log);
+        long a = svc.store("3x + 2y - z").getId();
+        long b = svc.store("(x^y)^2").getId();
+        long c = svc.store("x / 4").getId();
+        svc.delete(c);
+        log.close();
+
+        EquationLog reopened = openLog();
+        EquationService recovered = new EquationServiceImpl(reopened);
+        assertEquals(11.0, recovered.evaluate(a, Map.of("x", 2.0, "y", 3.0, "z", 1.0)), 1e-9);
+        assertEquals(svc.get(b).getInfix(), recovered.get(b).getInfix());
+        assertEquals(64.0, recovered.evaluate(b, Map.of("x", 2.0, "y", 3.0)), 1e-9);
+        assertThrows(EquationNotFoundException.class, () -> recovered.get(c));
+        // a deleted id is never handed out again
+        assertEquals(4, recovered.store("x").getId());
+        reopened.close();
+    }
+
+    @Test
+    void snapshot_compacts_segments_and_survives_restart() throws IOException {
+        EquationLog log = openLog();
+        EquationService svc = new EquationServiceImpl(log);
+        for (int i = 0; i < 50; i++)
+            svc.store(i + "x + " + i + "y");
+        for (int i = 1; i <= 40; i++)
+            svc.delete(i);
+        assertTrue(count("segment-*.log") > 3);
+
+        log.snapshot();
+        assertEquals(1, count("snapshot-*.snap"));
+        assertEquals(1, count("segment-*.log"));
+        svc.store("x - 1");
+        log.close();
+
+        EquationLog reopened = openLog();
+        EquationService recovered = new EquationServiceImpl(reopened);
+        assertEquals(11, recovered.list().size());
+        assertEquals(45.0 + 90.0, recovered.evaluate(46, Map.of("x", 1.0, "y", 2.0)), 1e-9);
+        assertEquals(52, recovered.store("y").getId());
+        reopened.close();
+    }
+
+    @Test
+    void deletes_racing_stores_stay_deleted_after_restart() throws InterruptedException {
+        EquationLog log = new EquationLog(dir, 1 << 20, 0, 0, false);
+        EquationService svc = new EquationServiceImpl(log);
+        AtomicBoolean done = new AtomicBoolean();
+        // delete every id as soon as it becomes visible, possibly before its store is logged
+        Thread deleter = new Thread(() -> {
+            while (!done.get())
+                for (int id = 1; id <= 1024; id++) { // four threads take at most four id blocks
+                    try {
+                        svc.delete(id);
+                    } catch (EquationNotFoundException ignored) {
+                    }
+                }
+        });
+        deleter.start();
+        IntStream.range(0, 4).parallel().forEach(t -> {
+            for (int i = 0; i < 200; i++)
+                svc.store(t + "x + " + i);
+        });
+        done.set(true);
+        deleter.join();
+        Set<Long> live = new HashSet<>();
+        svc.list().forEach(e -> live.add(e.getId()));
+        log.close();
+
+        EquationLog reopened = new EquationLog(dir, 1 << 20, 0, 0, false);
+        Set<Long> recovered = new HashSet<>();
+        new EquationServiceImpl(reopened).list().forEach(e -> recovered.add(e.getId()));
+        assertEquals(live, recovered);
+        reopened.close();
+    }
+}
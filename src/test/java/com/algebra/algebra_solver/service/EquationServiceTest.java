@@ -1,9 +1,24 @@
 package com.algebra.algebra_solver.service;
 
+import com.algebra.algebra_solver.exception.EquationNotFoundException;
 import com.algebra.algebra_solver.exception.InvalidEquationException;
+import com.algebra.algebra_solver.model.CompactTree;
+import com.algebra.algebra_solver.model.CompiledExpression;
+import com.algebra.algebra_solver.model.Equation;
+import com.algebra.algebra_solver.model.Node;
+import com.algebra.algebra_solver.model.SymbolTable;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -13,14 +28,14 @@ public class EquationServiceTest {
 
     @Test
     void evaluate_with_variables() {
-        String id = svc.store("3x + 2y - z").getId();
+        long id = svc.store("3x + 2y - z").getId();
         double v = svc.evaluate(id, Map.of("x", 2.0, "y", 3.0, "z", 1.0));
         assertEquals(11.0, v, 1e-9);
     }
 
     @Test
     void solve_linear() {
-        String id = svc.store("3x + 2").getId();
+        long id = svc.store("3x + 2").getId();
         EquationService.SolveResult s = svc.solve(id, "x", Map.of());
         assertEquals(1, s.degree);
         assertEquals(-2.0 / 3.0, s.solutions[0], 1e-9);
@@ -28,7 +43,7 @@ public class EquationServiceTest {
 
     @Test
     void solve_quadratic() {
-        String id = svc.store("x^2 - 5x + 6").getId();
+        long id = svc.store("x^2 - 5x + 6").getId();
         EquationService.SolveResult s = svc.solve(id, "x", Map.of());
         assertEquals(2, s.degree);
         double a = s.solutions[0], b = s.solutions[1];
@@ -70,21 +85,21 @@ public class EquationServiceTest {
     @Test
     void evaluate_with_parentheses_and_nesting() {
         // (2 + x) * (3 + y)
-        String id = svc.store("(2 + x) * (3 + y)").getId();
+        long id = svc.store("(2 + x) * (3 + y)").getId();
         double v = svc.evaluate(id, Map.of("x", 1.0, "y", 2.0));
         assertEquals(15.0, v, 1e-9);
     }
 
     @Test
     void solve_with_multiple_unknowns_should_fail() {
-        String id = svc.store("2*x + 3*y").getId();
+        long id = svc.store("2*x + 3*y").getId();
         assertThrows(InvalidEquationException.class, () -> svc.solve(id, "x", Map.of()));
     }
 
     @Test
     void store_and_evaluate_very_long_expression() {
         String expr = "x^3 + 2*x^2 - x + (y - 1)*(z + 4) - 7/5 + (x^2)";
-        String id = svc.store(expr).getId();
+        long id = svc.store(expr).getId();
         assertNotNull(id);
         // This just checks that evaluation doesn't throw for a complex input.
         assertDoesNotThrow(() -> svc.evaluate(id, Map.of("x", 1.0, "y", 2.0, "z", 3.0)));
@@ -92,7 +107,340 @@ public class EquationServiceTest {
 
     @Test
     void evaluate_with_no_variables_provided_should_fail() {
-        String id = svc.store("x + y").getId();
+        long id = svc.store("x + y").getId();
         assertThrows(IllegalArgumentException.class, () -> svc.evaluate(id, new HashMap<>()));
     }
+
+    @Test
+    void compiled_program_matches_tree_evaluation() {
+        var eq = svc.store("x^3 + 2*x^2 - x + (y - 1)*(z + 4) - 7/5 + 2(x)(y)");
+        Map<String, Double> vars = Map.of("x", 1.5, "y", -2.0, "z", 3.25);
+        assertEquals(eq.getRoot().evaluate(vars), svc.evaluate(eq.getId(), vars), 0.0);
+        assertArrayEquals(new String[] { "x", "y", "z" }, eq.getProgram().getSlots());
+    }
+
+    @Test
+    void evaluate_batch_matches_single_evaluation() {
+        long id = svc.store("3x + 2y - z").getId();
+        int rows = EquationServiceImpl.BATCH_PARALLEL_THRESHOLD + 5;
+        double[] x = new double[rows], y = new double[rows], z = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            x[i] = i;
+            y[i] = i * 0.5;
+            z[i] = -i;
+        }
+        double[] out = svc.evaluateBatch(id, Map.of("x", x, "y", y, "z", z));
+        assertEquals(rows, out.length);
+        for (int i = 0; i < rows; i += 997)
+            assertEquals(svc.evaluate(id, Map.of("x", x[i], "y", y[i], "z", z[i])), out[i], 0.0);
+    }
+
+    @Test
+    void evaluate_batch_reports_failing_row() {
+        long id = svc.store("1/x").getId();
+        ArithmeticException ex = assertThrows(ArithmeticException.class,
+                () -> svc.evaluateBatch(id, Map.of("x", new double[] { 1, 2, 0 })));
+        assertTrue(ex.getMessage().contains("row 2"));
+
+        // evaluated in parallel chunks, the lowest failing row is still the one reported
+        int rows = 4 * EquationServiceImpl.BATCH_PARALLEL_THRESHOLD;
+        double[] x = new double[rows];
+        Arrays.fill(x, 1.0);
+        int lowest = EquationServiceImpl.BATCH_CHUNK_ROWS + 7;
+        for (int row = lowest; row < rows; row += EquationServiceImpl.BATCH_CHUNK_ROWS)
+            x[row] = 0.0;
+        for (int run = 0; run < 20; run++) {
+            ArithmeticException parallel = assertThrows(ArithmeticException.class,
+                    () -> svc.evaluateBatch(id, Map.of("x", x)));
+            assertTrue(parallel.getMessage().endsWith("at row " + lowest), parallel.getMessage());
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> svc.evaluateBatch(id, Map.of("x", new double[] { 1 }, "y", new double[] { 1, 2 })));
+    }
+
+    @Test
+    void solve_uses_formal_degree_and_divides_by_constants() {
+        long id = svc.store("(x^2 + 4x) / 2 - x^2 / 2").getId();
+        EquationService.SolveResult s = svc.solve(id, "x", Map.of());
+        assertEquals(2, s.degree);
+        assertEquals(0.0, s.a, 0.0);
+        assertEquals(2.0, s.b, 1e-12);
+
+        long tooHigh = svc.store("x^65 - 1").getId();
+        assertThrows(InvalidEquationException.class, () -> svc.solve(tooHigh, "x", Map.of()));
+    }
+
+    @Test
+    void solves_high_degree_polynomials() {
+        long cubic = svc.store("x^3 - 6x^2 + 11x - 6").getId();
+        EquationService.SolveResult s = svc.solve(cubic, "x", Map.of());
+        assertEquals(3, s.degree);
+        assertArrayEquals(new double[] { -6, 11, -6, 1 }, s.coefficients, 0.0);
+        assertArrayEquals(new double[] { 1.0, 2.0, 3.0 }, s.solutions, 1e-12);
+
+        long roots = svc.store("x^64 - 1").getId();
+        assertArrayEquals(new double[] { -1.0, 1.0 }, svc.solve(roots, "x", Map.of()).solutions, 1e-12);
+        assertEquals(62, svc.solve(roots, "x", Map.of()).complexSolutions.length);
+
+        // no real roots: an error unless complex roots are asked for
+        long quartic = svc.store("x^4 + 4").getId();
+        InvalidEquationException ex = assertThrows(InvalidEquationException.class,
+                () -> svc.solve(quartic, "x", Map.of()));
+        assertTrue(ex.getMessage().startsWith("No real roots"));
+        EquationService.SolveResult c = svc.solve(quartic, "x", Map.of(), SolveOptions.exact().complex());
+        assertEquals(0, c.solutions.length);
+        assertEquals(4, c.complexSolutions.length);
+        for (double[] z : c.complexSolutions) {
+            assertEquals(1.0, Math.abs(z[0]), 1e-12);
+            assertEquals(1.0, Math.abs(z[1]), 1e-12);
+        }
+    }
+
+    @Test
+    void repeated_solves_hit_cache_until_delete() {
+        long id = svc.store("x^2 - 5x + k").getId();
+        SolveCache.Stats before = svc.solveCacheStats();
+        svc.solve(id, "x", Map.of("k", 6.0));
+        // extra knowns do not change the key
+        EquationService.SolveResult again = svc.solve(id, "x", Map.of("k", 6.0, "unused", 1.0));
+        SolveCache.Stats after = svc.solveCacheStats();
+        assertEquals(before.misses + 1, after.misses);
+        assertEquals(before.hits + 1, after.hits);
+        assertEquals(2, again.solutions.length);
+
+        svc.delete(id);
+        assertEquals(before.size, svc.solveCacheStats().size);
+    }
+
+    @Test
+    void storeAll_reports_ids_and_errors_in_input_order() {
+        List<EquationService.BulkResult> results = svc.storeAll(List.of("x + 1", "x + * 2", "2y"));
+        assertEquals(3, results.size());
+        assertEquals("x + 1", svc.get(results.get(0).equationId).getInfix());
+        assertEquals(0, results.get(1).equationId);
+        assertTrue(results.get(1).error.startsWith("Invalid equation: "));
+        assertEquals(results.get(0).equationId + 1, results.get(2).equationId);
+        assertEquals(4.0, svc.evaluate(results.get(2).equationId, Map.of("y", 2.0)), 1e-12);
+    }
+
+    @Test
+    void structurally_identical_equations_share_nodes_and_are_reported() {
+        Equation first = svc.store("3x + y*(x - 1)");
+        Equation second = svc.store("(x - 1)y + 3x");
+        assertSame(first.getTree(), second.getTree());
+        assertSame(first.getProgram(), second.getProgram());
+        assertEquals("(x - 1) * y + 3 * x", second.getInfix());
+        assertEquals(first.getId(), svc.duplicateOf(second.getId()));
+        assertEquals(0, svc.duplicateOf(first.getId()));
+
+        // slots and error order follow the text, not the canonical order
+        long id = svc.store("y + x").getId();
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> svc.evaluate(id, new HashMap<>()));
+        assertEquals("Missing variable value for 'y'", ex.getMessage());
+    }
+
+    @Test
+    void simplified_tree_keeps_text_and_accurate_variables() {
+        Equation e = svc.store("2*3*x + 0*y + x^1");
+        assertEquals("2 * 3 * x + 0 * y + x ^ 1", e.getInfix());
+        assertEquals(Set.of("x"), e.getVariables());
+        assertEquals(14.0, svc.evaluate(e.getId(), Map.of("x", 2.0)), 1e-12);
+    }
+
+    @Test
+    void hot_equations_are_compiled_after_threshold() {
+        long id = svc.store("x * y + 3 / x").getId();
+        CompiledExpression program = svc.get(id).getProgram();
+        Map<String, Double> vars = Map.of("x", 2.0, "y", 5.0);
+        for (int i = 0; i < EquationServiceImpl.DEFAULT_JIT_THRESHOLD - 1; i++)
+            assertEquals(11.5, svc.evaluate(id, vars), 0.0);
+        assertNull(program.getKernel());
+        assertEquals(11.5, svc.evaluate(id, vars), 0.0);
+        assertNotNull(program.getKernel());
+        assertThrows(ArithmeticException.class, () -> svc.evaluate(id, Map.of("x", 0.0, "y", 1.0)));
+    }
+
+    @Test
+    void gradient_matches_central_differences() {
+        long id = svc.store("x^3 * y - 2x/(y + 4) + y^x + 5").getId();
+        Map<String, Double> at = Map.of("x", 1.3, "y", 0.7);
+        EquationService.GradientResult g = svc.gradient(id, at);
+        assertEquals(svc.evaluate(id, at), g.value, 0.0);
+        double h = 1e-6;
+        for (String v : List.of("x", "y")) {
+            Map<String, Double> up = new HashMap<>(at), down = new HashMap<>(at);
+            up.put(v, at.get(v) + h);
+            down.put(v, at.get(v) - h);
+            double fd = (svc.evaluate(id, up) - svc.evaluate(id, down)) / (2 * h);
+            assertEquals(fd, g.gradient.get(v), 1e-6, v);
+        }
+        // constant exponents never take log of a negative base
+        long sq = svc.store("x^2").getId();
+        assertEquals(-6.0, svc.gradient(sq, Map.of("x", -3.0)).gradient.get("x"), 0.0);
+    }
+
+    @Test
+    void numeric_fallback_solves_what_the_polynomial_path_rejects() {
+        long rational = svc.store("x - 6/x + 1").getId();
+        assertThrows(InvalidEquationException.class, () -> svc.solve(rational, "x", Map.of()));
+        EquationService.SolveResult s = svc.solve(rational, "x", Map.of(), SolveOptions.auto());
+        assertEquals("numeric", s.method);
+        assertArrayEquals(new double[] { -3.0, 2.0 }, s.solutions, 1e-9);
+        assertTrue(s.convergence.converged);
+
+        long reciprocal = svc.store("1/x - k").getId();
+        assertArrayEquals(new double[] { 0.25 }, svc.solve(reciprocal, "x", Map.of("k", 4.0), SolveOptions.auto()).solutions,
+                1e-12);
+
+        // a pole changes sign but is not a root
+        long pole = svc.store("1/(x - 1)").getId();
+        InvalidEquationException ex = assertThrows(InvalidEquationException.class,
+                () -> svc.solve(pole, "x", Map.of(), SolveOptions.auto()));
+        assertTrue(ex.getMessage().startsWith("No real roots"));
+
+        // polynomial equations keep the exact path
+        long quad = svc.store("x^2 - 4").getId();
+        assertEquals("polynomial", svc.solve(quad, "x", Map.of(), SolveOptions.auto()).method);
+    }
+
+    @Test
+    void sweep_matches_single_solves_in_grid_order() {
+        long id = svc.store("a*x^3 - x + b").getId();
+        double[] a = new double[70], b = new double[70];
+        for (int i = 0; i < 70; i++) {
+            a[i] = i - 35;
+            b[i] = 0.5 * i - 10;
+        }
+        Map<String, double[]> axes = new LinkedHashMap<>();
+        axes.put("a", a);
+        axes.put("b", b);
+        EquationService.Sweep sweep = svc.sweep(id, "x", axes);
+        assertEquals(4900, sweep.points());
+        List<EquationService.SweepBlock> blocks = new ArrayList<>();
+        sweep.forEach(blocks::add);
+        long next = 0;
+        for (EquationService.SweepBlock block : blocks) {
+            assertEquals(next, block.first);
+            for (int i = 0; i < block.errors.length; i++) {
+                long p = block.first + i;
+                Map<String, Double> knowns = Map.of("a", a[(int) (p / 70)], "b", b[(int) (p % 70)]);
+                try {
+                    assertArrayEquals(svc.solve(id, "x", knowns).solutions, block.solutions[i], 1e-9);
+                } catch (InvalidEquationException ex) {
+                    assertEquals(ex.getMessage(), block.errors[i]);
+                }
+            }
+            next += block.errors.length;
+        }
+        assertEquals(4900, next);
+
+        assertThrows(InvalidEquationException.class, () -> svc.sweep(id, "x", Map.of("a", a)));
+    }
+
+    @Test
+    void sweep_solves_equations_without_an_expansion_as_solve_does() {
+        // dividing by a known keeps the equation from expanding; with the known substituted it is a polynomial
+        long id = svc.store("x^2 / k - 1").getId();
+        assertNull(svc.get(id).getPolynomial());
+        List<EquationService.SweepBlock> blocks = new ArrayList<>();
+        svc.sweep(id, "x", Map.of("k", new double[] { 4, -1, 0 })).forEach(blocks::add);
+        EquationService.SweepBlock block = blocks.get(0);
+        assertArrayEquals(new double[] { -2, 2 }, block.solutions[0], 1e-12);
+        assertEquals("No real roots (discriminant < 0)", block.errors[1]);
+        InvalidEquationException atZero = assertThrows(InvalidEquationException.class,
+                () -> svc.solve(id, "x", Map.of("k", 0.0), SolveOptions.auto()));
+        assertEquals(atZero.getMessage(), block.errors[2]);
+
+        // still not a polynomial in x: the numeric solver, point by point
+        long exponential = svc.store("2^x - k").getId();
+        svc.sweep(exponential, "x", Map.of("k", new double[] { 8, 32, -1 })).forEach(blocks::add);
+        block = blocks.get(1);
+        for (int i = 0; i < 2; i++) {
+            double k = i == 0 ? 8 : 32;
+            assertArrayEquals(svc.solve(exponential, "x", Map.of("k", k), SolveOptions.auto()).solutions,
+                    block.solutions[i], 1e-9);
+        }
+        assertEquals(5.0, block.solutions[1][0], 1e-9);
+        assertTrue(block.errors[2].startsWith("No real roots"), block.errors[2]);
+        assertThrows(InvalidEquationException.class, () -> svc.sweep(exponential, "x", Map.of()));
+    }
+
+    @Test
+    void stores_evaluates_and_solves_a_hundred_thousand_term_sum() {
+        StringBuilder sb = new StringBuilder("x ^ 2");
+        for (int i = 1; i < 100_000; i++)
+            sb.append(i % 2 == 0 ? " + " : " - ").append(i % 4 == 0 ? "y" : "1");
+        Equation e = svc.store(sb.toString());
+        // 24999 y terms added, 50000 ones subtracted and 25000 added
+        assertEquals(1 + 24_999 * 2.0 - 50_000 + 25_000, svc.evaluate(e.getId(), Map.of("x", 1.0, "y", 2.0)), 0.0);
+        assertArrayEquals(new double[] { -1, 1 }, svc.solve(e.getId(), "x", Map.of("y", 1.0)).solutions, 1e-9);
+        assertEquals(sb.toString(), e.getInfix());
+    }
+
+    @Test
+    void trees_are_stored_compactly_and_materialised_on_demand() {
+        Equation e = svc.store("2.50 * x + y / 3 - 0.1 * x");
+        Node root = e.getRoot();
+        assertNotSame(root, e.getRoot()); // rebuilt on every call, never kept
+        assertEquals(root.toInfix(), e.getRoot().toInfix());
+        assertEquals(CompactTree.of(root), e.getTree());
+        assertEquals(Set.of("x", "y"), e.getVariables());
+        assertEquals(svc.evaluate(e.getId(), Map.of("x", 2.0, "y", 6.0)),
+                root.evaluate(Map.of("x", 2.0, "y", 6.0)), 0.0);
+        assertSame(SymbolTable.intern(new String("x")), e.getProgram().getSlots()[0]);
+        // a token that does not round-trip through its value is kept as written
+        assertEquals("x * 2.50", svc.store("2.50x").getRoot().toInfix());
+    }
+
+    @Test
+    void new_names_past_the_symbol_table_limit_are_rejected() {
+        svc.store("x + y");
+        int previous = SymbolTable.limit(SymbolTable.size() + 1);
+        try {
+            svc.store("cappedA + x");
+            int before = svc.list().size();
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> svc.store("cappedB + x"));
+            assertTrue(e.getMessage().startsWith("Too many distinct names"));
+            assertEquals(before, svc.list().size());
+            // names already in the table still resolve
+            assertEquals(3.0, svc.evaluate(svc.store("cappedA * y").getId(), Map.of("cappedA", 1.5, "y", 2.0)),
+                    0.0);
+        } finally {
+            SymbolTable.limit(previous);
+        }
+    }
+
+    @Test
+    void reports_bytes_per_equation() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EquationService metered = new EquationServiceImpl(null, new SolveCache(), new NumericSolver(), registry,
+                EquationServiceImpl.DEFAULT_JIT_THRESHOLD);
+        Gauge gauge = registry.get("equations.store.bytes.per.equation").gauge();
+        assertEquals(0.0, gauge.value());
+        for (int i = 0; i < 100; i++)
+            metered.store("3x^2 + " + i + "y - 7");
+        double distinct = gauge.value();
+        assertTrue(distinct > 200 && distinct < 2000, "bytes per equation: " + distinct);
+        // twins share their tree, program and expansion
+        for (int i = 0; i < 100; i++)
+            metered.store("3x^2 + 5y - 7");
+        assertTrue(gauge.value() < distinct);
+    }
+
+    @Test
+    void concurrent_stores_get_unique_ids_in_per_thread_blocks() {
+        List<Long> ids = IntStream.range(0, 2000).parallel()
+                .mapToObj(i -> svc.store(i + "x").getId()).toList();
+        assertEquals(2000, new HashSet<>(ids).size());
+        for (int i = 0; i < ids.size(); i++)
+            assertEquals(i * 2.0, svc.evaluate(ids.get(i), Map.of("x", 2.0)), 0.0);
+        assertEquals(2000, svc.list().size());
+        // ids increase within a thread
+        EquationService fresh = new EquationServiceImpl();
+        assertEquals(1, fresh.store("y").getId());
+        assertEquals(2, fresh.store("y + 1").getId());
+        assertThrows(EquationNotFoundException.class, () -> fresh.get(3));
+    }
 }
@@ -0,0 +1,68 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.exception.InvalidEquationException;
+import com.algebra.algebra_solver.exception.NonPolynomialException;
+import com.algebra.algebra_solver.util.SparseLinearSolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EquationSystemsTest {
+
+    private final EquationService service = new EquationServiceImpl();
+    private final EquationSystems systems = new EquationSystems(service);
+
+    @Test
+    void solves_stored_equations_with_knowns_substituted() {
+        // with k = 2: 2x + y = 7, 2(x - y) = -2 and x + z = 8
+        long first = service.store("k*x + y - 7").getId();
+        long second = service.store("2(x - y) + k").getId();
+        long third = service.store("x + k + z - 10").getId();
+
+        EquationSystems.Result r = systems.solve(List.of(first, second, third), null, Map.of("k", 2.0));
+        assertEquals(List.of("x", "y", "z"), List.copyOf(r.solution.keySet()));
+        assertEquals(2.0, r.solution.get("x"), 1e-12);
+        assertEquals(3.0, r.solution.get("y"), 1e-12);
+        assertEquals(6.0, r.solution.get("z"), 1e-12);
+        assertEquals(SparseLinearSolver.LU, r.method);
+        assertEquals(List.of(first, second, third), r.equationIds);
+
+        // with k unknown too, k x is no longer linear
+        NonPolynomialException nonLinear = assertThrows(NonPolynomialException.class,
+                () -> systems.solve(List.of(first, second, third), List.of("x", "k", "z"), Map.of("y", 1.0)));
+        assertTrue(nonLinear.getMessage().startsWith("Equation id " + first + " is not linear"),
+                nonLinear.getMessage());
+        InvalidEquationException missing = assertThrows(InvalidEquationException.class,
+                () -> systems.solve(List.of(first, second), List.of("x", "y"), Map.of()));
+        assertEquals("Missing known value for 'k'", missing.getMessage());
+        assertThrows(IllegalArgumentException.class,
+                () -> systems.solve(List.of(first), List.of("x", "y"), Map.of("k", 2.0)));
+        assertThrows(ArithmeticException.class,
+                () -> systems.solve(List.of(first, first), List.of("x", "y"), Map.of("k", 2.0)));
+    }
+
+    @Test
+    void scales_to_thousands_of_unknowns() {
+        // a chain: 3 u_i - u_(i-1) - u_(i+1) = 1
+        int n = 2000;
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            StringBuilder eq = new StringBuilder("3u" + i);
+            if (i > 0)
+                eq.append(" - u").append(i - 1);
+            if (i < n - 1)
+                eq.append(" - u").append(i + 1);
+            ids.add(service.store(eq.append(" - 1").toString()).getId());
+        }
+        EquationSystems.Result r = systems.solve(ids, null, Map.of());
+        assertEquals(SparseLinearSolver.CGLS, r.method);
+        assertEquals(n, r.solution.size());
+        assertTrue(r.residual < 1e-8, "residual " + r.residual);
+        // far from the ends the chain settles at 3u - 2u = 1
+        assertEquals(1.0, r.solution.get("u1000"), 1e-9);
+    }
+}
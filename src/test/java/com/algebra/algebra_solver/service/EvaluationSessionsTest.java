@@ -0,0 +1,172 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.exception.EquationNotFoundException;
+import com.algebra.algebra_solver.exception.SessionNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvaluationSessionsTest {
+
+    private final EquationService service = new EquationServiceImpl();
+    private final EvaluationSessions sessions = new EvaluationSessions(service);
+
+    @Test
+    void updates_recompute_only_what_depends_on_the_changed_variables() {
+        StringBuilder sb = new StringBuilder("a0");
+        for (int i = 1; i < 200; i++)
+            sb.append(i % 3 == 0 ? " - " : " + ").append("a").append(i).append(i % 2 == 0 ? " * b" : " / (c + 2)");
+        long id = service.store(sb.toString()).getId();
+        Map<String, Double> vars = new HashMap<>();
+        for (int i = 0; i < 200; i++)
+            vars.put("a" + i, (double) i);
+        vars.put("b", 0.5);
+        vars.put("c", 1.0);
+
+        EvaluationSession session = sessions.open(id, vars);
+        EvaluationSession.Snapshot first = session.current();
+        assertEquals(1, first.version);
+        assertEquals(first.nodes, first.recomputed);
+        assertEquals(service.evaluate(id, vars), first.result, 1e-9);
+
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            String name = "a" + random.nextInt(200);
+            vars.put(name, random.nextDouble() * 100);
+            EvaluationSession.Snapshot next = session.update(Map.of(name, vars.get(name)));
+            assertEquals(service.evaluate(id, vars), next.result, 1e-9);
+            assertTrue(next.recomputed < next.nodes / 2, next.recomputed + " of " + next.nodes);
+        }
+        vars.put("c", 3.0);
+        vars.put("b", -1.0);
+        EvaluationSession.Snapshot both = session.update(Map.of("c", 3.0, "b", -1.0, "unused", 9.0));
+        assertEquals(service.evaluate(id, vars), both.result, 1e-9);
+        assertEquals(52, both.version);
+        assertEquals(0, session.update(Map.of("b", -1.0)).recomputed);
+    }
+
+    @Test
+    void failed_updates_keep_the_previous_values() {
+        long id = service.store("x / (y - 1) + x").getId();
+        EvaluationSession session = sessions.open(id, Map.of("x", 4.0, "y", 3.0));
+        assertEquals(6.0, session.current().result, 0.0);
+
+        assertThrows(ArithmeticException.class, () -> session.update(Map.of("x", 10.0, "y", 1.0)));
+        Map<String, Double> nulls = new HashMap<>();
+        nulls.put("x", null);
+        assertThrows(IllegalArgumentException.class, () -> session.update(nulls));
+        assertEquals(Map.of("x", 4.0, "y", 3.0), session.current().variables);
+        assertEquals(9.0, session.update(Map.of("x", 6.0)).result, 0.0);
+
+        IllegalArgumentException missing = assertThrows(IllegalArgumentException.class,
+                () -> sessions.open(id, Map.of("x", 1.0)));
+        assertEquals("Missing variable value for 'y'", missing.getMessage());
+    }
+
+    @Test
+    void listeners_see_every_version_until_the_session_closes() {
+        long id = service.store("2x + 1").getId();
+        EvaluationSession session = sessions.open(id, Map.of("x", 1.0));
+        List<Double> results = new ArrayList<>();
+        List<String> closed = new ArrayList<>();
+        session.subscribe(new EvaluationSession.Listener() {
+            @Override
+            public void onResult(EvaluationSession.Snapshot snapshot) {
+                results.add(snapshot.result);
+            }
+
+            @Override
+            public void onClose() {
+                closed.add(session.getId());
+            }
+        });
+        session.update(Map.of("x", 2.0));
+        session.update(Map.of("x", 3.0));
+        service.delete(id);
+        sessions.closeAll(id);
+
+        assertEquals(List.of(3.0, 5.0, 7.0), results);
+        assertEquals(List.of(session.getId()), closed);
+        assertThrows(SessionNotFoundException.class, () -> sessions.get(session.getId()));
+        assertThrows(SessionNotFoundException.class, () -> session.update(Map.of("x", 4.0)));
+    }
+
+    @Test
+    void the_least_recently_used_session_makes_room() {
+        EvaluationSessions bounded = new EvaluationSessions(service, 2, Duration.ofMinutes(30),
+                new SimpleMeterRegistry());
+        long id = service.store("x + 1").getId();
+        EvaluationSession a = bounded.open(id, Map.of("x", 1.0));
+        EvaluationSession b = bounded.open(id, Map.of("x", 2.0));
+        a.update(Map.of("x", 3.0));
+        bounded.open(id, Map.of("x", 4.0));
+        assertEquals(2, bounded.size());
+        assertSame(a, bounded.get(a.getId()));
+        assertThrows(SessionNotFoundException.class, () -> bounded.get(b.getId()));
+    }
+
+    @Test
+    void concurrent_opens_respect_the_cap_and_deletes_close_late_opens() throws InterruptedException {
+        EvaluationSessions bounded = new EvaluationSessions(service, 4, Duration.ofMinutes(30),
+                new SimpleMeterRegistry());
+        long id = service.store("x + 1").getId();
+        IntStream.range(0, 200).parallel().forEach(i -> bounded.open(id, Map.of("x", (double) i)));
+        assertEquals(4, bounded.size());
+
+        // opens racing a delete either fail or are closed by it; none outlives the equation
+        Thread[] openers = new Thread[4];
+        for (int t = 0; t < openers.length; t++) {
+            openers[t] = new Thread(() -> {
+                try {
+                    while (true)
+                        bounded.open(id, Map.of("x", 1.0));
+                } catch (EquationNotFoundException expected) {
+                }
+            });
+            openers[t].start();
+        }
+        Thread.sleep(20);
+        service.delete(id);
+        bounded.closeAll(id);
+        for (Thread t : openers)
+            t.join();
+        assertEquals(0, bounded.size());
+    }
+
+    @Test
+    void subscribed_sessions_do_not_expire() throws InterruptedException {
+        EvaluationSessions shortLived = new EvaluationSessions(service, 10, Duration.ofMillis(50),
+                new SimpleMeterRegistry());
+        long id = service.store("x + 1").getId();
+        EvaluationSession watched = shortLived.open(id, Map.of("x", 1.0));
+        EvaluationSession idle = shortLived.open(id, Map.of("x", 2.0));
+        EvaluationSession.Listener listener = new EvaluationSession.Listener() {
+            @Override
+            public void onResult(EvaluationSession.Snapshot snapshot) {
+            }
+
+            @Override
+            public void onClose() {
+            }
+        };
+        watched.subscribe(listener);
+        Thread.sleep(100);
+        assertSame(watched, shortLived.get(watched.getId()));
+        assertThrows(SessionNotFoundException.class, () -> shortLived.get(idle.getId()));
+
+        // once the last subscriber leaves the idle clock starts again
+        watched.unsubscribe(listener);
+        assertSame(watched, shortLived.get(watched.getId()));
+        Thread.sleep(100);
+        assertThrows(SessionNotFoundException.class, () -> shortLived.get(watched.getId()));
+    }
+}
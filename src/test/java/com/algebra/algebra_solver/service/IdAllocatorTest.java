@@ -0,0 +1,38 @@
+package com.algebra.algebra_solver.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdAllocatorTest {
+
+    @Test
+    void blocks_of_finished_threads_are_dropped_without_losing_the_last_id() throws InterruptedException {
+        IdAllocator ids = new IdAllocator();
+        Set<Long> issued = ConcurrentHashMap.newKeySet();
+        for (int round = 0; round < 50; round++) {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 10; i++)
+                        assertTrue(issued.add(ids.next()));
+                });
+                threads[t].start();
+            }
+            for (Thread t : threads)
+                t.join();
+        }
+        assertEquals(2000, issued.size());
+        long max = issued.stream().mapToLong(Long::longValue).max().orElseThrow();
+        assertEquals(max, ids.lastIssued());
+        assertEquals(0, ids.blocks());
+
+        // a restart resumes after the retired blocks
+        IdAllocator resumed = new IdAllocator();
+        resumed.resume(ids.lastIssued());
+        assertTrue(resumed.next() > max);
+    }
+}
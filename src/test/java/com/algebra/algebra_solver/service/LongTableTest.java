@@ -0,0 +1,92 @@
+package com.algebra.algebra_solver.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongTableTest {
+
+    @Test
+    void put_get_remove_across_resizes() {
+        LongTable<String> table = new LongTable<>();
+        for (long k = 1; k <= 10_000; k++)
+            assertNull(table.put(k, "v" + k));
+        assertEquals("v5", table.put(5, "w5"));
+        for (long k = 1; k <= 10_000; k += 2)
+            assertEquals(k == 5 ? "w5" : "v" + k, table.remove(k));
+        assertNull(table.remove(1));
+        assertEquals(5_000, table.size());
+        for (long k = 1; k <= 10_000; k++)
+            assertEquals(k % 2 == 0 ? "v" + k : null, table.get(k));
+        assertNull(table.get(0));
+        assertThrows(IllegalArgumentException.class, () -> table.put(0, "x"));
+    }
+
+    @Test
+    void readers_see_every_stable_entry_while_writers_churn() {
+        LongTable<Long> table = new LongTable<>();
+        for (long k = 1; k <= 1000; k++)
+            table.put(k, k);
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            // churn keys above the stable range, forcing tombstones and rebuilds
+            for (long round = 0; !stop.get(); round++) {
+                for (long k = 1001; k <= 5000; k++)
+                    table.put(k, k + round);
+                for (long k = 1001; k <= 5000; k++)
+                    table.remove(k);
+            }
+        });
+        writer.start();
+        try {
+            IntStream.range(0, 8).parallel().forEach(t -> {
+                for (int i = 0; i < 200_000; i++) {
+                    long k = 1 + (i * 7919L + t) % 1000;
+                    assertEquals(k, table.get(k));
+                }
+            });
+        } finally {
+            stop.set(true);
+        }
+        assertDoesNotThrow(() -> writer.join());
+        assertEquals(1000, table.size());
+    }
+
+    @Test
+    void readers_never_see_another_keys_value_while_keys_are_removed_and_put_back() {
+        // every value equals its key, so a reader that pairs a key with a reused slot's value gets caught
+        LongTable<Long> table = new LongTable<>();
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            long first = 1 + w * 64L;
+            writers[w] = new Thread(() -> {
+                while (!stop.get()) {
+                    for (long k = first; k < first + 64; k++)
+                        table.put(k, k);
+                    for (long k = first; k < first + 64; k++)
+                        table.remove(k);
+                }
+            });
+            writers[w].start();
+        }
+        try {
+            IntStream.range(0, 8).parallel().forEach(t -> {
+                for (int i = 0; i < 500_000; i++) {
+                    long k = 1 + (i * 31L + t) % 256;
+                    Long v = table.get(k);
+                    if (v != null)
+                        assertEquals(k, v.longValue());
+                }
+            });
+        } finally {
+            stop.set(true);
+        }
+        for (Thread w : writers)
+            assertDoesNotThrow(() -> w.join());
+        assertEquals(0, table.size());
+    }
+}
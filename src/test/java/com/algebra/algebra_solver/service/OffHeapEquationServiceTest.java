@@ -0,0 +1,118 @@
+package com.algebra.algebra_solver.service;
+
+import com.algebra.algebra_solver.exception.EquationNotFoundException;
+import com.algebra.algebra_solver.model.Equation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapEquationServiceTest {
+
+    private final EquationService heap = new EquationServiceImpl();
+    private final EquationService offHeap = new OffHeapEquationService(4096);
+
+    @Test
+    void behaves_like_the_heap_store() {
+        List<String> inputs = List.of("3x + 2y - z", "x^2 - 5x + 6", "2.50x - 1/y", "(x - 1)(x + 2)(x - 3)",
+                "2^x - 32", "7");
+        Map<String, Double> vars = Map.of("x", 1.5, "y", 2.0, "z", -1.0);
+        for (String in : inputs) {
+            Equation h = heap.store(in), o = offHeap.store(in);
+            assertEquals(h.getId(), o.getId());
+            Equation read = offHeap.get(o.getId());
+            assertEquals(h.getInfix(), read.getInfix());
+            assertEquals(h.getInfix(), offHeap.infixOf(o.getId()));
+            assertEquals(h.getVariables(), read.getVariables());
+            assertEquals(h.getRoot().toInfix(), read.getRoot().toInfix());
+            assertEquals(heap.evaluate(h.getId(), vars), offHeap.evaluate(o.getId(), vars), 0.0);
+            assertEquals(heap.gradient(h.getId(), vars).gradient, offHeap.gradient(o.getId(), vars).gradient);
+        }
+        assertArrayEquals(new double[] { 2, 3 }, offHeap.solve(2, "x", Map.of()).solutions, 1e-12);
+        assertArrayEquals(new double[] { -2, 1, 3 }, offHeap.solve(4, "x", Map.of()).solutions, 1e-9);
+        assertArrayEquals(new double[] { 5 }, offHeap.solve(5, "x", Map.of(), SolveOptions.auto()).solutions, 1e-9);
+        assertEquals(List.of(3L, 4L), ids(offHeap.page(2, 2)));
+        assertEquals(inputs.size(), offHeap.list().size());
+
+        IllegalArgumentException missing = assertThrows(IllegalArgumentException.class,
+                () -> offHeap.evaluate(1, Map.of("x", 1.0)));
+        assertEquals("Missing variable value for 'y'", missing.getMessage());
+        assertThrows(ArithmeticException.class, () -> offHeap.evaluate(3, Map.of("x", 1.0, "y", 0.0)));
+        assertThrows(EquationNotFoundException.class, () -> offHeap.evaluate(99, vars));
+        assertThrows(EquationNotFoundException.class, () -> offHeap.get(0));
+        assertThrows(EquationNotFoundException.class, () -> offHeap.infixOf(99));
+    }
+
+    @Test
+    void duplicates_are_found_by_structure() {
+        long first = offHeap.store("3x + y*(x - 1)").getId();
+        long second = offHeap.store("(x - 1)y + 3x").getId();
+        offHeap.store("3x + y*(x + 1)");
+        assertEquals(first, offHeap.duplicateOf(second));
+        assertEquals(0, offHeap.duplicateOf(first));
+        offHeap.delete(first);
+        assertEquals(0, offHeap.duplicateOf(second));
+    }
+
+    @Test
+    void deleting_the_first_twin_promotes_the_next_in_both_stores() {
+        for (EquationService svc : List.of(heap, offHeap)) {
+            long first = svc.store("x + y").getId();
+            long second = svc.store("y + x").getId();
+            svc.delete(first);
+            long third = svc.store("x + y").getId();
+            assertEquals(0, svc.duplicateOf(second));
+            assertEquals(second, svc.duplicateOf(third));
+            svc.delete(second);
+            assertEquals(0, svc.duplicateOf(third));
+        }
+    }
+
+    @Test
+    void deleted_space_is_compacted_away() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EquationService svc = new OffHeapEquationService(null, new SolveCache(), new NumericSolver(), registry,
+                DataSize.ofKilobytes(4));
+        for (int i = 1; i <= 2000; i++)
+            svc.store(i + "x^2 + " + i + "y - " + i);
+        double allocated = registry.get("equations.store.off-heap.bytes").tag("kind", "allocated").gauge().value();
+        for (int i = 1; i <= 2000; i++)
+            if (i % 10 != 0)
+                svc.delete(i);
+        assertTrue(registry.get("equations.store.off-heap.bytes").tag("kind", "allocated").gauge().value()
+                < allocated / 2);
+        assertEquals(200, svc.list().size());
+        for (int i = 10; i <= 2000; i += 10) {
+            long id = i;
+            assertEquals(i + " * x ^ 2 + " + i + " * y - " + i, svc.get(id).getInfix());
+            assertEquals(i * 4.0 + i * 3.0 - i, svc.evaluate(id, Map.of("x", 2.0, "y", 3.0)), 1e-9);
+        }
+        assertThrows(EquationNotFoundException.class, () -> svc.get(11));
+        assertEquals(2001, svc.store("x").getId());
+    }
+
+    @Test
+    void store_delete_churn_keeps_direct_memory_bounded() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EquationService svc = new OffHeapEquationService(null, new SolveCache(), new NumericSolver(), registry,
+                DataSize.ofKilobytes(1));
+        // every record dies while its slab is still the one taking new records
+        for (int i = 0; i < 1000; i++)
+            svc.delete(svc.store(i + "x + " + i).getId());
+        svc.store("x");
+        assertTrue(registry.get("equations.store.off-heap.bytes").tag("kind", "allocated").gauge().value() <= 2048);
+        assertEquals(1, svc.list().size());
+    }
+
+    private static List<Long> ids(List<Equation> equations) {
+        List<Long> out = new ArrayList<>();
+        for (Equation e : equations)
+            out.add(e.getId());
+        return out;
+    }
+}
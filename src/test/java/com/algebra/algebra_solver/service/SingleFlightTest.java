@@ -0,0 +1,106 @@
+package com.algebra.algebra_solver.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    void identical_concurrent_calls_compute_once_and_share_the_outcome() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SingleFlight flights = new SingleFlight(Duration.ofSeconds(10), registry);
+        AtomicInteger computed = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Object>> values = new ArrayList<>();
+            Object result = new Object();
+            for (int i = 0; i < CALLERS; i++)
+                values.add(pool.submit(() -> flights.run("evaluate", () -> {
+                    computed.incrementAndGet();
+                    await(release);
+                    return result;
+                })));
+            awaitWaiters(flights, "evaluate");
+            release.countDown();
+            for (Future<Object> f : values)
+                assertSame(result, f.get(10, TimeUnit.SECONDS));
+            assertEquals(1, computed.get());
+            assertEquals(CALLERS - 1, registry.get("equations.coalesced").tag("outcome", "shared").counter().count());
+            assertEquals(0, flights.inFlight());
+
+            CountDownLatch fail = new CountDownLatch(1);
+            List<Future<Object>> failures = new ArrayList<>();
+            ArithmeticException error = new ArithmeticException("Division by zero");
+            for (int i = 0; i < CALLERS; i++)
+                failures.add(pool.submit(() -> flights.run("solve", () -> {
+                    computed.incrementAndGet();
+                    await(fail);
+                    throw error;
+                })));
+            awaitWaiters(flights, "solve");
+            fail.countDown();
+            for (Future<Object> f : failures) {
+                Exception ex = assertThrows(Exception.class, () -> f.get(10, TimeUnit.SECONDS));
+                assertSame(error, ex.getCause());
+            }
+            assertEquals(2, computed.get());
+            assertEquals(0, flights.inFlight());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void waiters_compute_themselves_after_the_max_wait() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SingleFlight flights = new SingleFlight(Duration.ofMillis(20), registry);
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> leader = pool.submit(() -> flights.run("key", () -> {
+                started.countDown();
+                await(release);
+                return "leader";
+            }));
+            started.await();
+            assertEquals("own", flights.run("key", () -> "own"));
+            assertEquals(1.0, registry.get("equations.coalesced").tag("outcome", "timeout").counter().count());
+            release.countDown();
+            assertEquals("leader", leader.get(10, TimeUnit.SECONDS));
+            assertEquals("later", flights.run("key", () -> "later"));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("disabled", new SingleFlight(Duration.ZERO, registry).run("key", () -> "disabled"));
+    }
+
+    private static void awaitWaiters(SingleFlight flights, String key) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (flights.waiters(key) < CALLERS - 1 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertEquals(CALLERS - 1, flights.waiters(key));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
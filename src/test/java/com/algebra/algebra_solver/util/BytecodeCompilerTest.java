@@ -0,0 +1,37 @@
+package com.algebra.algebra_solver.util;
+
+import com.algebra.algebra_solver.model.CompiledExpression;
+import com.algebra.algebra_solver.model.Node;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BytecodeCompilerTest {
+
+    @Test
+    void kernel_matches_interpreter() {
+        Node root = EquationParser.parseToTree("x^3 + 2*x^2 - x + (y - 1)*(z + 4) - 7/5 + 2(x)(y) / (z - 0.5)");
+        CompiledExpression program = ExpressionCompiler.compile(root);
+        CompiledExpression.Kernel kernel = BytecodeCompiler.compile(program);
+        assertNotNull(kernel);
+        double[][] rows = { { 1.5, -2.0, 3.25 }, { 0.0, 0.0, 0.0 }, { -7.0, 1e6, 2.0 } };
+        for (double[] values : rows)
+            assertEquals(program.run(values, new double[program.getMaxStack()]), kernel.eval(values), 0.0);
+    }
+
+    @Test
+    void kernel_reports_division_by_zero_like_interpreter() {
+        CompiledExpression program = ExpressionCompiler.compile(EquationParser.parseToTree("1 / (x - 2)"));
+        CompiledExpression.Kernel kernel = BytecodeCompiler.compile(program);
+        ArithmeticException ex = assertThrows(ArithmeticException.class, () -> kernel.eval(new double[] { 2.0 }));
+        assertEquals("Division by zero", ex.getMessage());
+    }
+
+    @Test
+    void oversized_programs_stay_interpreted() {
+        StringBuilder sb = new StringBuilder("x");
+        for (int i = 0; i < BytecodeCompiler.MAX_INSTRUCTIONS; i++)
+            sb.append(" + x");
+        assertNull(BytecodeCompiler.compile(ExpressionCompiler.compile(EquationParser.parseToTree(sb.toString()))));
+    }
+}
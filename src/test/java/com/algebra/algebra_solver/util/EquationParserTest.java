@@ -0,0 +1,61 @@
+package com.algebra.algebra_solver.util;
+
+import com.algebra.algebra_solver.exception.InvalidEquationException;
+import com.algebra.algebra_solver.model.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EquationParserTest {
+
+    private static String error(String raw) {
+        return assertThrows(InvalidEquationException.class, () -> EquationParser.parseToTree(raw)).getMessage();
+    }
+
+    @Test
+    void implicit_multiplication_and_negative_literals() {
+        assertEquals("3 * x + 2 * (x - -1)", EquationParser.parseToTree("3x + 2(x - -1)").toInfix());
+        assertEquals("(x + 1) * (y - 2) * -0.5", EquationParser.parseToTree("(x+1)(y-2)*-0.5").toInfix());
+        assertEquals("x ^ -2", EquationParser.parseToTree("x^-2").toInfix());
+    }
+
+    @Test
+    void error_messages_follow_tokenize_then_structure_order() {
+        assertEquals("Equation cannot be empty", error("   "));
+        // an invalid character wins even when the structure is broken earlier
+        assertEquals("Invalid character: $", error("(3 ++ x $"));
+        assertEquals("Mismatched parentheses", error("3 ** (x"));
+        assertEquals("Mismatched parentheses", error("x)"));
+        assertEquals("Missing operands for operator *", error("3 * + 2"));
+        assertEquals("Missing operands for operator -", error("-x"));
+        assertEquals("Malformed expression", error("()"));
+    }
+
+    @Test
+    void very_deep_trees_render_and_evaluate_without_recursion() {
+        int n = 200_000;
+        StringBuilder sum = new StringBuilder("x");
+        for (int i = 1; i < n; i++)
+            sum.append(i % 2 == 0 ? " + " : " - ").append(i % 10);
+        Node left = EquationParser.parseToTree(sum.toString());
+        assertEquals(sum.toString(), left.toInfix());
+        double expected = 1;
+        for (int i = 1; i < n; i++)
+            expected += (i % 2 == 0 ? 1 : -1) * (i % 10);
+        assertEquals(expected, left.evaluate(Map.of("x", 1.0)), 0.0);
+
+        // right-deep, with parentheses at every level
+        Node right = EquationParser.parseToTree("(x - ".repeat(n) + "y" + ")".repeat(n));
+        String infix = right.toInfix();
+        assertTrue(infix.startsWith("x - (x - (x - "));
+        assertEquals(0.0, right.evaluate(Map.of("x", 1.0, "y", 0.0)), 0.0);
+        Set<String> vars = new LinkedHashSet<>();
+        right.collectVariables(vars);
+        assertEquals(List.of("x", "y"), List.copyOf(vars));
+    }
+}
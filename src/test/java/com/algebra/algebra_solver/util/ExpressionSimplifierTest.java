@@ -0,0 +1,63 @@
+package com.algebra.algebra_solver.util;
+
+import com.algebra.algebra_solver.model.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionSimplifierTest {
+
+    private final NodeInterner interner = new NodeInterner();
+    private final ExpressionSimplifier simplifier = new ExpressionSimplifier(interner);
+
+    private Node simplify(String eq) {
+        return simplifier.simplify(interner.intern(EquationParser.parseToTree(eq)));
+    }
+
+    private Node canonical(String eq) {
+        return interner.intern(EquationParser.parseToTree(eq));
+    }
+
+    @Test
+    void folds_constants_and_drops_identities() {
+        assertSame(canonical("7 * x"), simplify("2*3*x + 0*y + x^1"));
+        assertSame(canonical("x"), simplify("(x + 0) * 1 / 1"));
+        assertSame(canonical("y + 1"), simplify("x^0 + y"));
+        assertSame(canonical("6 * x"), simplify("2 * x * 3"));
+        // division is not turned into a coefficient, which would round differently
+        assertSame(canonical("2 * (a / 4)"), simplify("a / 4 + a / 4 * 1 + 0 * a"));
+    }
+
+    @Test
+    void merges_like_terms_but_keeps_cancelled_ones() {
+        assertSame(canonical("5 * x ^ 2 + 3"), simplify("2x^2 + 1 + 3x^2 + 2"));
+        Node kept = simplify("x^2 - x^2 + x");
+        assertEquals(2, PolynomialUtils.toPolynomial(kept, "x", Map.of()).degree());
+    }
+
+    @Test
+    void never_hides_division_by_zero() {
+        Node n = simplify("0 * (1 / x) + 4 / (2 - 2)");
+        assertThrows(ArithmeticException.class, () -> n.evaluate(Map.of("x", 1.0)));
+        assertThrows(ArithmeticException.class, () -> simplify("(1 / x) ^ 0").evaluate(Map.of("x", 0.0)));
+    }
+
+    @Test
+    void rewritten_tree_evaluates_like_the_original() {
+        String[] equations = { "2*3*x + 0*y + x^1", "(x + 1)(x - 1) - x*x + 2.5*y - y/2",
+                "x^2 * 4 / 2 - 3 + z - (z - 3)", "-1 * (x - y) + x" };
+        Map<String, Double> vars = Map.of("x", 1.75, "y", -0.5, "z", 3.0);
+        for (String eq : equations) {
+            Node original = EquationParser.parseToTree(eq);
+            Node simplified = simplify(eq);
+            assertEquals(original.evaluate(vars), simplified.evaluate(vars), 1e-12, eq);
+            Set<String> vars1 = new TreeSet<>();
+            simplified.collectVariables(vars1);
+            assertTrue(vars.keySet().containsAll(vars1));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.algebra.algebra_solver.util;
+
+import com.algebra.algebra_solver.exception.InvalidEquationException;
+import com.algebra.algebra_solver.model.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultiPolynomialTest {
+
+    private static MultiPolynomial expand(Node root) {
+        return MultiPolynomial.expand(root, ExpressionCompiler.compile(root).getSlots());
+    }
+
+    @Test
+    void substitution_matches_tree_walk_for_every_variable() {
+        Map<String, Double> knowns = Map.of("x", 1.5, "y", -2.0, "z", 0.25);
+        String[] equations = { "3x + 2y - z", "(x + y)^2 - x*y/4", "(x - y)(x + z)(y - 3) + 7",
+                "x^2 - x^2 + y", "0 * x^3 + z", "(2x + y*z)^3 / 8 - 1", "y^0 + 5", "(x - y + 2z)^7 - x^13" };
+        for (String eq : equations) {
+            Node root = EquationParser.parseToTree(eq);
+            MultiPolynomial p = expand(root);
+            assertNotNull(p, eq);
+            for (String var : new String[] { "x", "y", "z", "w" }) {
+                Polynomial expected = PolynomialUtils.toPolynomial(root, var, knowns);
+                Polynomial actual = p.substitute(var, knowns);
+                assertEquals(expected.degree(), actual.degree(), eq + " for " + var);
+                for (int k = 0; k <= expected.degree(); k++)
+                    assertEquals(expected.coefficient(k), actual.coefficient(k), 1e-9, eq + " for " + var);
+            }
+        }
+    }
+
+    @Test
+    void missing_knowns_are_reported_in_first_occurrence_order() {
+        MultiPolynomial p = expand(EquationParser.parseToTree("b^0 + x*a"));
+        InvalidEquationException ex = assertThrows(InvalidEquationException.class,
+                () -> p.substitute("x", Map.of()));
+        assertEquals("Missing known value for 'b' while solving for 'x'", ex.getMessage());
+    }
+
+    @Test
+    void non_polynomial_trees_are_not_expanded() {
+        assertNull(expand(EquationParser.parseToTree("x / y")));
+        assertNull(expand(EquationParser.parseToTree("x ^ n")));
+        assertNull(expand(EquationParser.parseToTree("x ^ 65")));
+        assertNull(expand(EquationParser.parseToTree("x / (2 - 2)")));
+        assertNotNull(expand(EquationParser.parseToTree("x / (4 - 2)")));
+    }
+}
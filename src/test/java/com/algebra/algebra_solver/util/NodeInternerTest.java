@@ -0,0 +1,30 @@
+package com.algebra.algebra_solver.util;
+
+import com.algebra.algebra_solver.model.Node;
+import com.algebra.algebra_solver.model.OperatorNode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NodeInternerTest {
+
+    @Test
+    void identical_subtrees_share_one_node() {
+        NodeInterner interner = new NodeInterner();
+        OperatorNode a = (OperatorNode) interner.intern(EquationParser.parseToTree("(x + 1) * (x + 1)"));
+        assertSame(a.getLeft(), a.getRight());
+        Node b = interner.intern(EquationParser.parseToTree("(x + 1) * (x + 1)"));
+        assertSame(a, b);
+    }
+
+    @Test
+    void commutative_operands_are_canonically_ordered() {
+        NodeInterner interner = new NodeInterner();
+        Node a = interner.intern(EquationParser.parseToTree("(2 + x) * y"));
+        Node b = interner.intern(EquationParser.parseToTree("y * (x + 2)"));
+        assertSame(a, b);
+        // non-commutative operators keep their order
+        assertNotSame(interner.intern(EquationParser.parseToTree("x - 2")),
+                interner.intern(EquationParser.parseToTree("2 - x")));
+    }
+}
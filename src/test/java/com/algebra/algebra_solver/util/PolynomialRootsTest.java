@@ -0,0 +1,88 @@
+package com.algebra.algebra_solver.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PolynomialRootsTest {
+
+    // ascending coefficients of prod (x - r)
+    private static double[] fromRoots(double... roots) {
+        Polynomial p = Polynomial.constant(1.0);
+        for (double r : roots)
+            p.multiply(Polynomial.of(-r, 1.0));
+        return p.coefficients();
+    }
+
+    @Test
+    void finds_all_real_roots_in_order() {
+        double[] roots = { -7.5, -2, 0.25, 1, 3, 40 };
+        PolynomialRoots.Roots r = PolynomialRoots.find(fromRoots(40, 1, -2, 3, 0.25, -7.5));
+        assertArrayEquals(roots, r.real, 1e-10);
+        assertEquals(0, r.complex.length);
+    }
+
+    @Test
+    void separates_complex_pairs() {
+        // (x^2 + 1)(x - 2)
+        PolynomialRoots.Roots r = PolynomialRoots.find(new double[] { -2, 1, -2, 1 });
+        assertArrayEquals(new double[] { 2.0 }, r.real, 1e-14);
+        assertEquals(2, r.complex.length);
+        assertArrayEquals(new double[] { 0, -1 }, r.complex[0], 1e-14);
+        assertArrayEquals(new double[] { 0, 1 }, r.complex[1], 1e-14);
+    }
+
+    @Test
+    void handles_zero_multiple_and_large_roots() {
+        assertArrayEquals(new double[] { -1, 0, 0, 1 }, PolynomialRoots.find(new double[] { 0, 0, -1, 0, 1 }).real,
+                0.0);
+        // triple root: each copy accurate to about eps^(1/3)
+        assertArrayEquals(new double[] { 1, 1, 1 }, PolynomialRoots.find(fromRoots(1, 1, 1)).real, 1e-4);
+        // (x - 1e6)(x^63 - 1) only stays finite through the reversed evaluation
+        double[] c = new double[65];
+        c[64] = 1;
+        c[63] = -1e6;
+        c[1] = -1;
+        c[0] = 1e6;
+        double[] real = PolynomialRoots.find(c).real;
+        assertEquals(2, real.length);
+        assertEquals(1.0, real[0], 1e-12);
+        assertEquals(1e6, real[1], 1e-6);
+    }
+
+    @Test
+    void random_degree_64_roots_have_rounding_level_residuals() {
+        Random rnd = new Random(42);
+        for (int trial = 0; trial < 20; trial++) {
+            double[] c = new double[65];
+            for (int k = 0; k < c.length; k++)
+                c[k] = rnd.nextGaussian();
+            PolynomialRoots.Roots r = PolynomialRoots.find(c);
+            assertEquals(64, r.real.length + r.complex.length);
+            for (double x : r.real)
+                assertTrue(relativeResidual(c, x, 0) < 1e-13, "real root " + x);
+            for (double[] z : r.complex)
+                assertTrue(relativeResidual(c, z[0], z[1]) < 1e-13, "complex root " + z[0] + "+" + z[1] + "i");
+        }
+    }
+
+    // |p(z)| / sum |c_k| |z|^k
+    private static double relativeResidual(double[] c, double x, double y) {
+        double pr = 0, pi = 0, bound = 0, az = Math.hypot(x, y);
+        for (int k = c.length - 1; k >= 0; k--) {
+            double t = pr * x - pi * y + c[k];
+            pi = pr * y + pi * x;
+            pr = t;
+            bound = bound * az + Math.abs(c[k]);
+        }
+        return Math.hypot(pr, pi) / bound;
+    }
+
+    @Test
+    void rejects_constants_and_excess_degree() {
+        assertThrows(IllegalArgumentException.class, () -> PolynomialRoots.find(new double[] { 3, 0, 0 }));
+        assertThrows(IllegalArgumentException.class, () -> PolynomialRoots.find(new double[66]));
+    }
+}
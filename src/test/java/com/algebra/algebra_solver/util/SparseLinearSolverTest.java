@@ -0,0 +1,103 @@
+package com.algebra.algebra_solver.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SparseLinearSolverTest {
+
+    @Test
+    void small_square_systems_are_factorised_with_pivoting() {
+        // y = 2, x + y = 5, x - z = 0: the first pivot has to come from a later row
+        SparseLinearSolver.Matrix a = SparseLinearSolver.Matrix.of(3,
+                new int[][] { { 1 }, { 0, 1 }, { 0, 2 } },
+                new double[][] { { 1 }, { 1, 1 }, { 1, -1 } });
+        SparseLinearSolver.Solution s = SparseLinearSolver.solve(a, new double[] { 2, 5, 0 }, 100, 1e-12);
+        assertEquals(SparseLinearSolver.LU, s.method);
+        assertArrayEquals(new double[] { 3, 2, 3 }, s.x, 1e-12);
+
+        SparseLinearSolver.Matrix singular = SparseLinearSolver.Matrix.of(2,
+                new int[][] { { 0, 1 }, { 0, 1 } }, new double[][] { { 1, 2 }, { 2, 4 } });
+        assertThrows(ArithmeticException.class, () -> SparseLinearSolver.solve(singular, new double[] { 1, 2 }, 100,
+                1e-12));
+        assertThrows(IllegalArgumentException.class, () -> SparseLinearSolver.solve(
+                SparseLinearSolver.Matrix.of(2, new int[][] { { 0, 1 } }, new double[][] { { 1, 1 } }),
+                new double[] { 1 }, 100, 1e-12));
+    }
+
+    @Test
+    void large_and_overdetermined_systems_converge_iteratively() {
+        // 20 000 unknowns on badly scaled columns, three entries per row: enough non-zeros to run in parallel
+        int n = 20_000;
+        Random random = new Random(7);
+        double[] scale = new double[n];
+        double[] expected = new double[n];
+        for (int j = 0; j < n; j++) {
+            scale[j] = Math.pow(10, random.nextInt(7) - 3);
+            expected[j] = random.nextDouble() * 10 - 5;
+        }
+        int[][] columns = new int[n][];
+        double[][] values = new double[n][];
+        for (int i = 0; i < n; i++) {
+            int from = Math.max(0, i - 1), to = Math.min(n - 1, i + 1);
+            columns[i] = new int[to - from + 1];
+            values[i] = new double[to - from + 1];
+            for (int j = from; j <= to; j++) {
+                columns[i][j - from] = j;
+                values[i][j - from] = (j == i ? 4 : -1) * scale[j];
+            }
+        }
+        SparseLinearSolver.Matrix a = SparseLinearSolver.Matrix.of(n, columns, values);
+        assertTrue(a.nonZeros() >= SparseLinearSolver.PARALLEL_NNZ);
+        double[] b = new double[n];
+        a.multiply(expected, b);
+        SparseLinearSolver.Solution s = SparseLinearSolver.solve(a, b, 10_000, 1e-12);
+        assertEquals(SparseLinearSolver.CGLS, s.method);
+        for (int j = 0; j < n; j++)
+            assertEquals(expected[j], s.x[j], 1e-8 / scale[j]);
+        assertTrue(s.iterations > 0 && s.iterations < 1000, "iterations: " + s.iterations);
+
+        // x + y = 3, x - y = 1, 2x = 4: consistent, one equation more than unknowns
+        SparseLinearSolver.Matrix tall = SparseLinearSolver.Matrix.of(2,
+                new int[][] { { 0, 1 }, { 0, 1 }, { 0 } }, new double[][] { { 1, 1 }, { 1, -1 }, { 2 } });
+        SparseLinearSolver.Solution ls = SparseLinearSolver.solve(tall, new double[] { 3, 1, 4 }, 100, 1e-12);
+        assertArrayEquals(new double[] { 2, 1 }, ls.x, 1e-10);
+        assertEquals(0.0, ls.residual, 1e-10);
+
+        assertThrows(ArithmeticException.class, () -> SparseLinearSolver.solve(a, b, 2, 1e-12));
+    }
+
+    @Test
+    void large_singular_systems_fail_like_small_ones() {
+        // 300 unknowns, too many to factorise densely; the last two rows both say x + y = 1
+        int n = 300;
+        int[][] columns = new int[n][];
+        double[][] values = new double[n][];
+        for (int i = 0; i < n - 2; i++) {
+            columns[i] = i == 0 ? new int[] { 0 } : new int[] { i - 1, i };
+            values[i] = i == 0 ? new double[] { 2 } : new double[] { -1, 2 };
+        }
+        columns[n - 2] = new int[] { n - 2, n - 1 };
+        values[n - 2] = new double[] { 1, 1 };
+        columns[n - 1] = new int[] { n - 2, n - 1 };
+        values[n - 1] = new double[] { 2, 2 };
+        double[] b = new double[n];
+        Arrays.fill(b, 1);
+        b[n - 1] = 2;
+        ArithmeticException ex = assertThrows(ArithmeticException.class,
+                () -> SparseLinearSolver.solve(SparseLinearSolver.Matrix.of(n, columns, values), b, 10_000, 1e-10));
+        assertTrue(ex.getMessage().startsWith("Singular system"), ex.getMessage());
+
+        // the same system with the second row made independent is solved
+        values[n - 1] = new double[] { 2, -2 };
+        b[n - 1] = 0;
+        SparseLinearSolver.Solution s = SparseLinearSolver.solve(SparseLinearSolver.Matrix.of(n, columns, values), b,
+                10_000, 1e-10);
+        assertEquals(SparseLinearSolver.CGLS, s.method);
+        assertEquals(0.5, s.x[n - 2], 1e-8);
+        assertEquals(0.5, s.x[n - 1], 1e-8);
+    }
+}